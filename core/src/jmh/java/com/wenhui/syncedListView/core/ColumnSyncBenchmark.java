@@ -0,0 +1,133 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One frame of the scroll pipeline across N columns, a benchmark op is a frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnSyncBenchmark {
+
+    private static final long FRAME_NANOS = 16666667L;
+
+    @Param({"2", "4", "6"})
+    public int columns;
+
+    private ColumnSync<BenchmarkColumn> mSync;
+    private AutoScrollClock mClock;
+    private final FlingEngine mFlingEngine = new SplineFlingEngine(420f);
+    private long mFrameTimeNanos;
+    private int mFrame;
+
+    @Setup
+    public void setUp(){
+        mSync = new ColumnSync<BenchmarkColumn>();
+        for( int i=0; i<columns; i++ ){
+            BenchmarkColumn column = new BenchmarkColumn(0.6f + 0.3f * i, 1f + 0.5f * i);
+            column.setFlingFriction(1f + 0.25f * i);
+            mSync.add(column);
+        }
+        mClock = new AutoScrollClock(1500 * 60);
+        mFrameTimeNanos = 1L;
+        mFrame = 0;
+    }
+
+    /**
+     * A drag frame, several touch deltas coalesced then flushed once.
+     */
+    @Benchmark
+    public int dragFrame(){
+        mFrame++;
+        mSync.accumulate(3.25f, false);
+        mSync.accumulate(-1.5f, false);
+        mSync.accumulate(mFrame & 7, false);
+        return flush();
+    }
+
+    @Benchmark
+    public int autoScrollFrame(){
+        mFrameTimeNanos += FRAME_NANOS;
+        mSync.accumulate(mClock.advance(mFrameTimeNanos), true);
+        return flush();
+    }
+
+    /**
+     * A fling frame, every column stepping its own fling; a new fling starts when they all ended.
+     */
+    @Benchmark
+    public int flingFrame(){
+        mFrameTimeNanos += FRAME_NANOS;
+        if( !mSync.stepFlings(mFrameTimeNanos) ){
+            float velocity = (mFrame++ & 1) == 0 ? 4000f : -4000f;
+            for( int i=0, count=mSync.size(); i<count; i++ ){
+                BenchmarkColumn column = mSync.get(i);
+                column.getFling().start(mFlingEngine, velocity, column.getFlingFriction(),
+                        column.getScrollFactor(), mFrameTimeNanos);
+            }
+        }
+        return flush();
+    }
+
+    private int flush(){
+        int moved = 0;
+        for( int i=0, count=mSync.size(); i<count; i++ ){
+            moved += mSync.get(i).takeWholePixels();
+        }
+        return moved;
+    }
+
+    static final class BenchmarkColumn extends ColumnScrollState {
+
+        BenchmarkColumn(float scrollFactor, float animationFactor) {
+            super(scrollFactor, animationFactor);
+        }
+
+        @Override
+        public void scrollBy(int deltaY) {
+        }
+
+        @Override
+        public long getScrollOffset() {
+            return 1000L;
+        }
+
+        @Override
+        public long getMaxScrollOffset() {
+            return 100000L;
+        }
+    }
+
+}
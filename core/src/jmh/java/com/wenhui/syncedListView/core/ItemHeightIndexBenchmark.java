@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemHeightIndexBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"100", "10000"})
+    public int itemCount;
+
+    private ItemHeightIndex mIndex;
+    private long[] mOffsets;
+    private int[] mPositions;
+    private int mQuery;
+
+    @Setup
+    public void setUp(){
+        Random random = new Random(42);
+        mIndex = new ItemHeightIndex(itemCount, true, 200);
+        // Half the rows measured, the rest estimated
+        for( int i=0; i<itemCount; i += 2 ){
+            mIndex.setHeight(i, 100 + random.nextInt(300));
+        }
+        long total = mIndex.getTotalHeight();
+        mOffsets = new long[QUERIES];
+        mPositions = new int[QUERIES];
+        for( int i=0; i<QUERIES; i++ ){
+            mOffsets[i] = (long) (random.nextDouble() * total * 3);
+            mPositions[i] = random.nextInt(itemCount * 3);
+        }
+    }
+
+    @Benchmark
+    public long positionAt(){
+        mQuery = (mQuery + 1) & (QUERIES - 1);
+        return mIndex.positionAt(mOffsets[mQuery]);
+    }
+
+    @Benchmark
+    public long offsetOf(){
+        mQuery = (mQuery + 1) & (QUERIES - 1);
+        return mIndex.offsetOf(mPositions[mQuery]);
+    }
+
+    /**
+     * What a column does per frame for a visible row, the height is usually unchanged.
+     */
+    @Benchmark
+    public int recordHeight(){
+        mQuery = (mQuery + 1) & (QUERIES - 1);
+        int position = mPositions[mQuery];
+        mIndex.setHeight(position, 100 + (position & 255));
+        return mIndex.getEstimatedHeight();
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+/**
+ * Distance of an endless auto scroll, derived from frame times. However often or rarely frames
+ * come, the travelled distance only depends on the elapsed time.
+ */
+public final class AutoScrollClock {
+
+    public static final long MINUTE_NANOS = 60L * 1000L * 1000L * 1000L;
+
+    private int mVelocity;
+    private long mStartTimeNanos = 0;
+    private double mLastDistance = 0;
+
+    /**
+     * @param velocity  Distance per minute
+     */
+    public AutoScrollClock(int velocity){
+        mVelocity = velocity;
+    }
+
+    /**
+     * @param velocity  Distance per minute
+     */
+    public void setVelocity(int velocity){
+        mVelocity = velocity;
+        // Measure from the current position on, the time already spent used the old velocity
+        mStartTimeNanos = 0;
+    }
+
+    public int getVelocity(){
+        return mVelocity;
+    }
+
+    /**
+     * Start over, the next frame only records its time.
+     */
+    public void reset(){
+        mStartTimeNanos = 0;
+        mLastDistance = 0;
+    }
+
+    /**
+     * @param frameTimeNanos  Time of the frame being drawn
+     * @return Distance to move since the previous frame, fractional: slow scrolls move less than a
+     * pixel a frame, and only each column's own remainder decides when it takes a whole pixel
+     */
+    public double advance(long frameTimeNanos){
+        if( mStartTimeNanos == 0 ){
+            // First frame only records the start, distance is measured from here
+            mStartTimeNanos = frameTimeNanos;
+            mLastDistance = 0;
+            return 0;
+        }
+
+        long elapsed = frameTimeNanos - mStartTimeNanos;
+        double distance = elapsed * (double) mVelocity / MINUTE_NANOS;
+        double diff = distance - mLastDistance;
+        mLastDistance = distance;
+        return diff;
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+/**
+ * A column's running fling. The end distance is known when the fling starts and may be moved
+ * before its first frame, to land on a row boundary or stop at the end of the content; the fling
+ * keeps its timing and covers the new distance instead.
+ */
+public final class ColumnFling {
+
+    private FlingEngine mEngine;
+    private float mVelocity;
+    private float mFriction;
+    private double mDistance;
+    private long mDurationNanos;
+    private long mStartTimeNanos;
+    private double mLastDistance;
+    private boolean mFinished = true;
+
+    /**
+     * @param velocity  Shared start velocity in pixels per second, positive moves the content up
+     * @param friction  Multiplier of the engine's friction
+     * @param scale  Factor applied to the distance, the column's scroll factor
+     * @param startTimeNanos  On the frame clock, 0 to start on the first frame
+     */
+    public void start(FlingEngine engine, float velocity, float friction, float scale, long startTimeNanos) {
+        mEngine = engine;
+        mVelocity = velocity;
+        mFriction = friction;
+        mDistance = engine.getDistance(velocity, friction) * scale;
+        mDurationNanos = engine.getDurationNanos(velocity, friction);
+        mStartTimeNanos = startTimeNanos;
+        mLastDistance = 0.0;
+        mFinished = mDurationNanos <= 0L || mDistance == 0.0;
+    }
+
+    /**
+     * @return Velocity whose fling covers the distance, by bisection since the distance grows with
+     * the velocity
+     */
+    public static float getVelocityFor(FlingEngine engine, double distance, float friction) {
+        final double target = Math.abs(distance);
+        double low = 0.0, high = 1.0;
+        while( engine.getDistance((float) high, friction) < target && high < 1e7 ){
+            high *= 2.0;
+        }
+        for( int i=0; i<40; i++ ){
+            final double mid = (low + high) / 2.0;
+            if( engine.getDistance((float) mid, friction) < target ){
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return (float) (Math.signum(distance) * high);
+    }
+
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    public void cancel() {
+        mFinished = true;
+    }
+
+    /**
+     * @return Distance of the whole fling from where it started
+     */
+    public double getFinalDistance() {
+        return mDistance;
+    }
+
+    public void setFinalDistance(double distance) {
+        mDistance = distance;
+    }
+
+    /**
+     * Move the end to the nearest row boundary.
+     *
+     * @param start  Content offset the fling starts from
+     */
+    public void snapTo(ItemHeightIndex index, double start) {
+        final double end = start + mDistance;
+        if( end <= 0.0 || index.getItemCount() == 0 ){ return; }
+        final long position = index.positionAt((long) end);
+        final long top = index.offsetOf(position);
+        final long bottom = index.offsetOf(position + 1);
+        setFinalDistance((end - top <= bottom - end ? top : bottom) - start);
+    }
+
+    /**
+     * Keep the end within the distances given.
+     */
+    public void clamp(double min, double max) {
+        setFinalDistance(Math.max(min, Math.min(max, mDistance)));
+    }
+
+    /**
+     * @param frameTimeNanos  Time of the frame being drawn
+     * @return Distance to move since the previous frame
+     */
+    public double step(long frameTimeNanos) {
+        if( mFinished ){ return 0.0; }
+        if( mStartTimeNanos == 0L ){
+            mStartTimeNanos = frameTimeNanos;
+        }
+
+        final double fraction = (double) (frameTimeNanos - mStartTimeNanos) / mDurationNanos;
+        double distance;
+        if( fraction <= 0.0 ){
+            return 0.0;
+        } else if( fraction >= 1.0 ){
+            distance = mDistance;
+            mFinished = true;
+        } else {
+            distance = mDistance * mEngine.getProgress(mVelocity, mFriction, fraction);
+        }
+        final double delta = distance - mLastDistance;
+        mLastDistance = distance;
+        return delta;
+    }
+
+}
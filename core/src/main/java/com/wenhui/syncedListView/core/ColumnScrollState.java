@@ -0,0 +1,205 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+/**
+ * Scroll bookkeeping of one synced column: its factors and the scaled distance not scrolled yet.
+ * Subclasses attach it to a view, move it in {@link #scrollBy(int)} and may report absolute offsets
+ * and row heights, which {@link ColumnSync} uses once per frame.
+ */
+public abstract class ColumnScrollState {
+
+    /** Max scroll offset of content without an end */
+    public static final long UNBOUNDED = Long.MAX_VALUE;
+
+    private float mScrollFactor;
+    private float mAnimationFactor;
+    private float mFlingFriction = 1f;
+    private final ColumnFling mFling = new ColumnFling();
+    private final PrefetchWindow mPrefetchWindow = new PrefetchWindow();
+    private int mLayoutPasses;
+
+    /**
+     * Scaled distance not scrolled yet. Whole pixels are taken once per frame, what is left stays
+     * here for the next frame.
+     */
+    private double mPendingScroll;
+
+    protected ColumnScrollState(float scrollFactor, float animationFactor) {
+        mScrollFactor = scrollFactor;
+        mAnimationFactor = animationFactor;
+    }
+
+    public float getScrollFactor() {
+        return mScrollFactor;
+    }
+
+    public void setScrollFactor(float factor) {
+        mScrollFactor = factor;
+    }
+
+    public float getAnimationFactor() {
+        return mAnimationFactor;
+    }
+
+    public void setAnimationFactor(float factor) {
+        mAnimationFactor = factor;
+    }
+
+    /**
+     * @return Multiplier of the fling engine's friction, 1 by default
+     */
+    public float getFlingFriction() {
+        return mFlingFriction;
+    }
+
+    public void setFlingFriction(float friction) {
+        mFlingFriction = friction;
+    }
+
+    public ColumnFling getFling() {
+        return mFling;
+    }
+
+    public float getFactor(boolean animating) {
+        return animating ? mAnimationFactor : mScrollFactor;
+    }
+
+    /**
+     * @param distance  Shared distance, scaled by this column's factor
+     */
+    public void accumulate(double distance, boolean animating) {
+        mPendingScroll += distance * getFactor(animating);
+    }
+
+    /**
+     * Add a distance of this column's own, already scaled, such as a step of its fling.
+     */
+    public void addPendingScroll(double distance) {
+        mPendingScroll += distance;
+    }
+
+    public double getPendingScroll() {
+        return mPendingScroll;
+    }
+
+    /**
+     * Take the nearest whole number of pixels out of the pending scroll. The remainder is kept, so
+     * the factors stay exact however slow the scroll, and rounding is symmetric for both directions.
+     */
+    public int takeWholePixels() {
+        int pixels = (int) Math.round(mPendingScroll);
+        mPendingScroll -= pixels;
+        return pixels;
+    }
+
+    public void clearPendingScroll() {
+        mPendingScroll = 0;
+    }
+
+    /**
+     * @param deltaY  Whole pixels, positive moves the content up
+     */
+    public abstract void scrollBy(int deltaY);
+
+    /**
+     * Whether the whole offset can be shown by {@link #setTranslationOffset(float)} without a row
+     * entering or leaving the viewport. The default only allows the sub-pixel remainder.
+     */
+    public boolean canTranslateBy(double offset) {
+        return Math.abs(offset) <= 0.5;
+    }
+
+    /**
+     * Show the distance not scrolled yet without a scroll.
+     *
+     * @param offset  Positive moves the content up like {@link #scrollBy(int)}
+     */
+    public void setTranslationOffset(float offset) {
+    }
+
+    /**
+     * Count a layout pass of the column's view, taken once per frame by
+     * {@link ColumnSync#recordFrame(ScrollMetrics, FrameRecorder, long, int, long, long, long)}.
+     */
+    public void countLayoutPass() {
+        mLayoutPasses++;
+    }
+
+    /**
+     * @return Layout passes since the last call
+     */
+    public int takeLayoutPasses() {
+        int passes = mLayoutPasses;
+        mLayoutPasses = 0;
+        return passes;
+    }
+
+    /**
+     * Where the column records the views its rows are bound into, null to stop.
+     */
+    public void attachMetrics(ScrollMetrics.Column metrics) {
+    }
+
+    /**
+     * @return Row heights behind {@link #getScrollOffset()}, null if the column has none
+     */
+    public ItemHeightIndex getHeightIndex() {
+        return null;
+    }
+
+    public int getViewportHeight() {
+        return 0;
+    }
+
+    /**
+     * @return Whether the column takes {@link #prefetch(int)} calls
+     */
+    public boolean canPrefetch() {
+        return false;
+    }
+
+    /**
+     * Prepare a row that is about to come into view.
+     *
+     * @param position  Adapter position
+     */
+    public void prefetch(int position) {
+    }
+
+    /**
+     * @return Rows already prefetched
+     */
+    public PrefetchWindow getPrefetchWindow() {
+        return mPrefetchWindow;
+    }
+
+    /**
+     * @return Absolute content offset of the top of the viewport, -1 if the column cannot tell
+     */
+    public long getScrollOffset() {
+        return -1;
+    }
+
+    /**
+     * @return Largest value of {@link #getScrollOffset()}, {@link #UNBOUNDED} for wrapping content
+     */
+    public long getMaxScrollOffset() {
+        return UNBOUNDED;
+    }
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+import java.util.ArrayList;
+
+/**
+ * The registered columns of a synced layout and the work applied to all of them at once: spreading
+ * a shared distance over the columns, stepping their flings, and the per-frame record, scroll and
+ * prefetch passes the engine runs.
+ */
+public final class ColumnSync<C extends ColumnScrollState> {
+
+    private final ArrayList<C> mColumns = new ArrayList<C>();
+
+    public void add(C column){
+        mColumns.add(column);
+    }
+
+    public void set(int index, C column){
+        if( index < mColumns.size() ){
+            mColumns.set(index, column);
+        } else if( index == mColumns.size() ){
+            mColumns.add(column);
+        } else {
+            throw new IllegalStateException("Columns must be set in order, no column at " + (index - 1));
+        }
+    }
+
+    public void remove(int index){
+        mColumns.remove(index);
+    }
+
+    public C get(int index){
+        return mColumns.get(index);
+    }
+
+    public int size(){
+        return mColumns.size();
+    }
+
+    public int indexOf(C column){
+        return mColumns.indexOf(column);
+    }
+
+    /**
+     * Add the shared distance to every column's pending scroll, each scaled by its own factor.
+     */
+    public void accumulate(double distance, boolean animating){
+        for( int i=0, count=mColumns.size(); i<count; i++ ){
+            mColumns.get(i).accumulate(distance, animating);
+        }
+    }
+
+    /**
+     * Advance the fling of every column, each adding its step to its pending scroll.
+     *
+     * @return true while any column is still flinging
+     */
+    public boolean stepFlings(long frameTimeNanos){
+        boolean running = false;
+        for( int i=0, count=mColumns.size(); i<count; i++ ){
+            C column = mColumns.get(i);
+            ColumnFling fling = column.getFling();
+            if( fling.isFinished() ){ continue; }
+            column.addPendingScroll(fling.step(frameTimeNanos));
+            running |= !fling.isFinished();
+        }
+        return running;
+    }
+
+    public void cancelFlings(){
+        for( int i=0, count=mColumns.size(); i<count; i++ ){
+            mColumns.get(i).getFling().cancel();
+        }
+    }
+
+    /**
+     * Fit a started fling to its column: move its landing to a row boundary and inside the content,
+     * and prefetch the rows it comes to rest on. Does nothing while the column has no offset.
+     *
+     * @param settle       False if the column moves itself and its fling only predicts the landing
+     * @param snap         Whether the landing moves to a row boundary
+     * @param maxPrefetch  Rows prefetched at most, 0 for none
+     */
+    public void landFling(C column, boolean settle, boolean snap, int maxPrefetch){
+        final long offset = column.getScrollOffset();
+        if( offset < 0 ){ return; }
+
+        final ColumnFling fling = column.getFling();
+        final double start = offset + column.getPendingScroll();
+        final ItemHeightIndex index = column.getHeightIndex();
+        if( settle ){
+            if( snap && index != null ){
+                fling.snapTo(index, start);
+            }
+            long max = column.getMaxScrollOffset();
+            if( max != ColumnScrollState.UNBOUNDED ){
+                fling.clamp(-start, max - start);
+            }
+        }
+
+        if( index != null && maxPrefetch > 0 ){
+            prefetchLanding(column, index, (long) (start + fling.getFinalDistance()), maxPrefetch);
+        }
+    }
+
+    /**
+     * Record a frame and every column's layout passes since the last one. Either target may be null.
+     *
+     * @param interval      Time since the previous frame, 0 if it does not count as one
+     * @param expected      Interval the frame was scheduled for
+     * @param framePeriod   Display refresh period, the unit of dropped frames
+     */
+    public void recordFrame(ScrollMetrics metrics, FrameRecorder recorder, long frameTimeNanos,
+                            int mode, long interval, long expected, long framePeriod){
+        int dropped = 0;
+        if( interval > 0L ){
+            dropped = (int) Math.max(0L, (interval - expected + framePeriod / 2) / framePeriod);
+        }
+        if( metrics != null ){
+            metrics.recordFrame(mode, interval, dropped);
+        }
+        if( recorder != null ){
+            recorder.beginFrame(frameTimeNanos, interval, mode, mColumns.size());
+        }
+
+        for( int i=0, count=mColumns.size(); i<count; i++ ){
+            C column = mColumns.get(i);
+            int passes = column.takeLayoutPasses();
+            if( metrics != null ){
+                // The adapter may have been set or swapped since, attaching is a field write
+                column.attachMetrics(metrics.getColumn(i));
+                // Layouts while idle belong to no frame
+                if( interval > 0L ){
+                    metrics.getColumn(i).recordLayoutPasses(passes);
+                }
+            }
+            if( recorder != null ){
+                recorder.putColumn(i, column.getScrollOffset(), passes);
+            }
+        }
+
+        if( recorder != null ){
+            recorder.endFrame();
+        }
+    }
+
+    /**
+     * Apply the pending scroll of every column, once per frame.
+     *
+     * @param translate  Show the pending scroll by translation alone while the column allows it,
+     *                   it is only rebased into a real scroll when a row would enter or leave
+     * @param metrics    Where scroll times go, null for none
+     */
+    public void flush(boolean translate, ScrollMetrics metrics){
+        long total = 0L;
+        for( int i=0, count=mColumns.size(); i<count; i++ ){
+            C column = mColumns.get(i);
+            if( !translate || !column.canTranslateBy(column.getPendingScroll()) ){
+                int deltaY = column.takeWholePixels();
+                if( deltaY != 0 ){
+                    if( metrics != null ){
+                        long start = System.nanoTime();
+                        column.scrollBy(deltaY);
+                        long time = System.nanoTime() - start;
+                        metrics.getColumn(i).recordScrollTime(time);
+                        total += time;
+                    } else {
+                        column.scrollBy(deltaY);
+                    }
+                }
+            }
+            column.setTranslationOffset((float) column.getPendingScroll());
+        }
+        if( metrics != null ){
+            metrics.recordScrollTime(total);
+        }
+    }
+
+    /**
+     * Prefetch the rows an animation brings into view of every column, each row once.
+     *
+     * @param travel      Shared distance ahead, scaled by each column's animation factor
+     * @param maxPerPass  Rows prefetched per column at most
+     */
+    public void prefetch(double travel, int maxPerPass){
+        for( int i=0, count=mColumns.size(); i<count; i++ ){
+            C column = mColumns.get(i);
+            if( !column.canPrefetch() ){ continue; }
+            ItemHeightIndex index = column.getHeightIndex();
+            long offset = column.getScrollOffset();
+            if( index == null || offset < 0 ){ continue; }
+
+            PrefetchWindow window = column.getPrefetchWindow();
+            if( !window.update(index, offset, column.getViewportHeight(),
+                    travel * column.getAnimationFactor(), maxPerPass) ){
+                continue;
+            }
+            prefetchRows(column, index, window.getFirst(), window.getLast());
+        }
+    }
+
+    /**
+     * @param offset  Content offset at the end of the fling
+     */
+    private static void prefetchLanding(ColumnScrollState column, ItemHeightIndex index, long offset, int max){
+        if( !column.canPrefetch() ){ return; }
+        long first = index.positionAt(Math.max(0L, offset));
+        long last = index.positionAt(Math.max(0L, offset + column.getViewportHeight() - 1));
+        if( !index.isWrapping() ){
+            last = Math.min(last, index.getItemCount() - 1);
+        }
+        prefetchRows(column, index, first, Math.min(last, first + max - 1));
+    }
+
+    /**
+     * @param first  Row to prefetch first, may be after last
+     */
+    private static void prefetchRows(ColumnScrollState column, ItemHeightIndex index, long first, long last){
+        final int itemCount = index.getItemCount();
+        final long step = last >= first ? 1 : -1;
+        for( long p=first; p != last + step; p += step ){
+            column.prefetch(index.isWrapping()
+                    ? WrappedPositions.getRealPosition((int) p, itemCount) : (int) p);
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Image dimensions by key, least recently used first out past a fixed number of entries, and
+ * saved to and loaded from a file so rows get their final size on first layout after a restart
+ * too. Thread safe.
+ *
+ * @see ImageHeaderProbe
+ */
+public final class DimensionCache {
+
+    private static final int MAGIC = 0x44494d43;
+    private static final int VERSION = 1;
+
+    private final int mMaxEntries;
+    private final LinkedHashMap<String, Long> mEntries;
+
+    public DimensionCache(final int maxEntries) {
+        mMaxEntries = maxEntries;
+        mEntries = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > mMaxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return Packed dimensions, see {@link ImageHeaderProbe#getWidth(long)}, or
+     * {@link ImageHeaderProbe#UNKNOWN}
+     */
+    public synchronized long get(String key) {
+        Long dimensions = mEntries.get(key);
+        return dimensions == null ? ImageHeaderProbe.UNKNOWN : dimensions;
+    }
+
+    public synchronized void put(String key, int width, int height) {
+        mEntries.put(key, ImageHeaderProbe.pack(width, height));
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * Write the entries, oldest first, through a temporary file renamed over the target.
+     */
+    public synchronized void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temp);
+        try{
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(mEntries.size());
+            for( Map.Entry<String, Long> entry : mEntries.entrySet() ){
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            out.flush();
+            stream.getFD().sync();
+        }finally {
+            stream.close();
+        }
+        if( !temp.renameTo(file) ){
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    /**
+     * Add the entries of a file written by {@link #save(File)}. A missing file adds nothing, a
+     * truncated one adds what it holds.
+     */
+    public synchronized void load(File file) throws IOException {
+        if( !file.exists() ){ return; }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try{
+            if( in.readInt() != MAGIC || in.readInt() != VERSION ){ return; }
+            final int count = in.readInt();
+            for( int i=0; i<count; i++ ){
+                String key = in.readUTF();
+                long dimensions = in.readLong();
+                // Whatever was probed since is newer
+                if( !mEntries.containsKey(key) ){
+                    mEntries.put(key, dimensions);
+                }
+            }
+        }catch (EOFException e){
+            // Keep what was read
+        }finally {
+            in.close();
+        }
+    }
+
+}
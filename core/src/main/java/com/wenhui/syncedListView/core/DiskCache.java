@@ -0,0 +1,623 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Byte values by key on disk, for thumbnails that should survive a restart. One append-only data
+ * file holds the records, and a memory-mapped index of fixed size slots maps key hashes to them
+ * with open addressing, so a lookup is a probe in the mapped index plus positional reads of the
+ * key, which tells colliding hashes apart, and of the record.
+ * Least recently used entries are evicted past the byte budget, and the data file is compacted
+ * into a new generation once it holds as much garbage as the budget.
+ * <p>
+ * Records are appended before the slot pointing at them is published, and every record carries
+ * its key and a CRC, so after a crash at any point a lookup either finds a complete record or
+ * misses. A compaction only takes effect with the atomic rename of the new index. Thread safe.
+ */
+public final class DiskCache implements Closeable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int INDEX_MAGIC = 0x534c4443;
+    private static final int RECORD_MAGIC = 0x5245434f;
+    private static final int VERSION = 1;
+
+    // Index header: magic, version, slot count, unused, data generation, access clock
+    private static final int HEADER_SIZE = 64;
+    private static final int HEADER_GENERATION = 16;
+    private static final int HEADER_CLOCK = 24;
+
+    // Slot: key hash, record offset, record length, state, last access
+    private static final int SLOT_SIZE = 32;
+    private static final int SLOT_HASH = 0;
+    private static final int SLOT_OFFSET = 8;
+    private static final int SLOT_LENGTH = 16;
+    private static final int SLOT_STATE = 20;
+    private static final int SLOT_ACCESS = 24;
+
+    /** Most slots, the index stays within one mapping and a slot fits the low bits of a sort key */
+    private static final int SLOT_BITS = 25;
+    private static final int MAX_SLOTS = 1 << SLOT_BITS;
+    /** Most entries, twice over the 3/4 compaction threshold of the largest index */
+    public static final int MAX_ENTRIES = MAX_SLOTS / 8 * 3;
+
+    private static final int STATE_EMPTY = 0;
+    private static final int STATE_LIVE = 1;
+    private static final int STATE_DELETED = 2;
+
+    // Record: magic, key length, value length, crc of key and value, key, value
+    private static final int RECORD_HEADER_SIZE = 16;
+
+    private static final String INDEX_NAME = "index";
+    private static final String INDEX_TEMP_NAME = "index.tmp";
+    private static final String DATA_PREFIX = "data.";
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private final int mSlotCount;
+    private final int mMaxEntries;
+
+    private MappedByteBuffer mIndex;
+    private RandomAccessFile mDataFile;
+    private FileChannel mData;
+    private long mGeneration;
+    private long mDataSize;
+    private long mLiveBytes = 0;
+    private int mLiveCount = 0;
+    private int mDeletedCount = 0;
+
+    /**
+     * Open the cache in the directory, creating it or recovering what a crash left behind.
+     *
+     * @param maxBytes  Budget of the live records
+     * @param maxEntries  Most records kept, sizes the index, up to {@link #MAX_ENTRIES}
+     */
+    public static DiskCache open(File directory, long maxBytes, int maxEntries) throws IOException {
+        if( maxEntries <= 0 || maxEntries > MAX_ENTRIES ){
+            throw new IllegalArgumentException("maxEntries must be within 1.." + MAX_ENTRIES + ": " + maxEntries);
+        }
+        if( !directory.isDirectory() && !directory.mkdirs() ){
+            throw new IOException("Cannot create " + directory);
+        }
+        DiskCache cache = new DiskCache(directory, maxBytes, maxEntries);
+        cache.load();
+        return cache;
+    }
+
+    private DiskCache(File directory, long maxBytes, int maxEntries) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+        mMaxEntries = maxEntries;
+        // Compaction starts when live and deleted slots pass 3/4, put that at twice the entries so a
+        // full cache goes through as many deletions again first. A power of two for masking.
+        final int needed = (int) Math.max(16L, (maxEntries * 8L + 2) / 3);
+        final int slots = Integer.highestOneBit(needed);
+        mSlotCount = slots < needed ? slots * 2 : slots;
+    }
+
+    /**
+     * @return The value, or null if missing or unreadable
+     */
+    public synchronized byte[] get(String key) throws IOException {
+        final byte[] keyBytes = key.getBytes(UTF_8);
+        final int slot = findSlot(keyBytes, hash(keyBytes));
+        if( slot < 0 ){ return null; }
+
+        final int base = slotBase(slot);
+        final long offset = mIndex.getLong(base + SLOT_OFFSET);
+        final int length = mIndex.getInt(base + SLOT_LENGTH);
+        ByteBuffer record = ByteBuffer.allocate(length);
+        readFully(record, offset);
+        byte[] value = readRecord(record, keyBytes);
+        if( value == null ){
+            // The key matched, so the rest was torn by a crash
+            deleteSlot(slot);
+            return null;
+        }
+        mIndex.putLong(base + SLOT_ACCESS, nextAccess());
+        return value;
+    }
+
+    /**
+     * Read the start of a value, such as an image header, without reading the rest. The bytes are
+     * read on demand and not checked against the record's CRC, only {@link #get(String)} does
+     * that, and the entry's last use is left alone. The channel fails once a compaction moved the
+     * record.
+     *
+     * @return A channel over the value, null if missing
+     */
+    public synchronized ReadableByteChannel openValue(String key) throws IOException {
+        final byte[] keyBytes = key.getBytes(UTF_8);
+        final int slot = findSlot(keyBytes, hash(keyBytes));
+        if( slot < 0 ){ return null; }
+        final int base = slotBase(slot);
+        final long start = mIndex.getLong(base + SLOT_OFFSET) + RECORD_HEADER_SIZE + keyBytes.length;
+        return new ValueChannel(start, mIndex.getLong(base + SLOT_OFFSET) + mIndex.getInt(base + SLOT_LENGTH));
+    }
+
+    public synchronized boolean contains(String key) throws IOException {
+        final byte[] keyBytes = key.getBytes(UTF_8);
+        return findSlot(keyBytes, hash(keyBytes)) >= 0;
+    }
+
+    /**
+     * Store the value, replacing any previous one. Values over the budget are not stored.
+     */
+    public synchronized void put(String key, byte[] value) throws IOException {
+        final byte[] keyBytes = key.getBytes(UTF_8);
+        final int length = RECORD_HEADER_SIZE + keyBytes.length + value.length;
+        if( length > mMaxBytes ){ return; }
+
+        final long hash = hash(keyBytes);
+        final long offset = mDataSize;
+        ByteBuffer record = ByteBuffer.allocate(length);
+        CRC32 crc = new CRC32();
+        crc.update(keyBytes);
+        crc.update(value);
+        record.putInt(RECORD_MAGIC).putInt(keyBytes.length).putInt(value.length).putInt((int) crc.getValue());
+        record.put(keyBytes).put(value);
+        record.flip();
+        while( record.hasRemaining() ){
+            mData.write(record, offset + record.position());
+        }
+        mDataSize += length;
+
+        int slot = findSlot(keyBytes, hash);
+        if( slot >= 0 ){
+            mLiveBytes -= mIndex.getInt(slotBase(slot) + SLOT_LENGTH);
+        } else {
+            slot = findFreeSlot(hash);
+            if( mIndex.getInt(slotBase(slot) + SLOT_STATE) == STATE_DELETED ){
+                mDeletedCount--;
+            }
+            mLiveCount++;
+        }
+        // The state goes last, a slot is only live once it points at a complete record
+        final int base = slotBase(slot);
+        mIndex.putLong(base + SLOT_HASH, hash);
+        mIndex.putLong(base + SLOT_OFFSET, offset);
+        mIndex.putInt(base + SLOT_LENGTH, length);
+        mIndex.putLong(base + SLOT_ACCESS, nextAccess());
+        mIndex.putInt(base + SLOT_STATE, STATE_LIVE);
+        mLiveBytes += length;
+
+        trim();
+    }
+
+    public synchronized boolean remove(String key) throws IOException {
+        final byte[] keyBytes = key.getBytes(UTF_8);
+        final int slot = findSlot(keyBytes, hash(keyBytes));
+        if( slot < 0 ){ return false; }
+        deleteSlot(slot);
+        return true;
+    }
+
+    /**
+     * @return Bytes of the live records
+     */
+    public synchronized long size() {
+        return mLiveBytes;
+    }
+
+    public synchronized int count() {
+        return mLiveCount;
+    }
+
+    /**
+     * Write the index and the data to the device, for a state that also survives power loss.
+     */
+    public synchronized void flush() throws IOException {
+        mData.force(false);
+        mIndex.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if( mDataFile == null ){ return; }
+        mIndex.force();
+        mDataFile.close();
+        mDataFile = null;
+        mData = null;
+        mIndex = null;
+    }
+
+    private void load() throws IOException {
+        File indexFile = new File(mDirectory, INDEX_NAME);
+        new File(mDirectory, INDEX_TEMP_NAME).delete();
+        boolean valid = indexFile.length() == indexSize() && map(indexFile)
+                && mIndex.getInt(0) == INDEX_MAGIC && mIndex.getInt(4) == VERSION
+                && mIndex.getInt(8) == mSlotCount && dataFile(mIndex.getLong(HEADER_GENERATION)).exists();
+        if( !valid ){
+            writeEmptyIndex(indexFile);
+            map(indexFile);
+        }
+        mGeneration = mIndex.getLong(HEADER_GENERATION);
+        deleteOtherGenerations();
+        openData(false);
+
+        // Drop slots whose record did not make it to the data file
+        for( int slot=0; slot<mSlotCount; slot++ ){
+            final int base = slotBase(slot);
+            final int state = mIndex.getInt(base + SLOT_STATE);
+            if( state == STATE_DELETED ){
+                mDeletedCount++;
+            } else if( state == STATE_LIVE ){
+                long end = mIndex.getLong(base + SLOT_OFFSET) + mIndex.getInt(base + SLOT_LENGTH);
+                if( end > mDataSize || mIndex.getInt(base + SLOT_LENGTH) < RECORD_HEADER_SIZE ){
+                    mIndex.putInt(base + SLOT_STATE, STATE_DELETED);
+                    mDeletedCount++;
+                } else {
+                    mLiveCount++;
+                    mLiveBytes += mIndex.getInt(base + SLOT_LENGTH);
+                }
+            }
+        }
+        trim();
+    }
+
+    private boolean map(File indexFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(indexFile, "rw");
+        try{
+            file.setLength(indexSize());
+            mIndex = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, indexSize());
+        }finally {
+            // The mapping stays valid
+            file.close();
+        }
+        return true;
+    }
+
+    private void writeEmptyIndex(File indexFile) throws IOException {
+        for( File file : listDataFiles() ){
+            file.delete();
+        }
+        File temp = new File(mDirectory, INDEX_TEMP_NAME);
+        RandomAccessFile file = new RandomAccessFile(temp, "rw");
+        try{
+            file.setLength(0);
+            file.setLength(indexSize());
+            file.getChannel().write(header(0L, 0L), 0);
+            file.getFD().sync();
+        }finally {
+            file.close();
+        }
+        new RandomAccessFile(dataFile(0L), "rw").close();
+        if( !temp.renameTo(indexFile) ){
+            throw new IOException("Cannot create " + indexFile);
+        }
+    }
+
+    private void openData(boolean truncate) throws IOException {
+        mDataFile = new RandomAccessFile(dataFile(mGeneration), "rw");
+        if( truncate ){
+            mDataFile.setLength(0);
+        }
+        mData = mDataFile.getChannel();
+        mDataSize = mData.size();
+    }
+
+    /**
+     * Evict least recently used records past the budget, then compact when the data file holds
+     * too much garbage or the index too many deleted slots.
+     */
+    private void trim() throws IOException {
+        if( mLiveBytes > mMaxBytes || mLiveCount > mMaxEntries ){
+            evict(mMaxBytes - mMaxBytes / 10, mMaxEntries - mMaxEntries / 10);
+        }
+        if( mDataSize - mLiveBytes > Math.max(mMaxBytes, 1024 * 1024)
+                || mLiveCount + mDeletedCount > mSlotCount * 3 / 4 ){
+            compact();
+        }
+    }
+
+    private void evict(long targetBytes, int targetCount) {
+        long[] order = new long[mLiveCount];
+        int n = 0;
+        for( int slot=0; slot<mSlotCount && n < order.length; slot++ ){
+            final int base = slotBase(slot);
+            if( mIndex.getInt(base + SLOT_STATE) == STATE_LIVE ){
+                // Access clock in the high bits, slot in the low ones
+                order[n++] = (mIndex.getLong(base + SLOT_ACCESS) << SLOT_BITS) | slot;
+            }
+        }
+        Arrays.sort(order, 0, n);
+        for( int i=0; i<n && (mLiveBytes > targetBytes || mLiveCount > targetCount); i++ ){
+            deleteSlot((int) (order[i] & (MAX_SLOTS - 1)));
+        }
+    }
+
+    /**
+     * Copy the live records into the next generation's data file, write an index for it and
+     * switch over by renaming the index.
+     */
+    private void compact() throws IOException {
+        final long generation = mGeneration + 1;
+        File newData = dataFile(generation);
+        ByteBuffer index = ByteBuffer.allocate(indexSize());
+        index.put(header(generation, mIndex.getLong(HEADER_CLOCK)));
+
+        RandomAccessFile out = new RandomAccessFile(newData, "rw");
+        try{
+            out.setLength(0);
+            FileChannel channel = out.getChannel();
+            long position = 0;
+            for( int slot=0; slot<mSlotCount; slot++ ){
+                final int base = slotBase(slot);
+                if( mIndex.getInt(base + SLOT_STATE) != STATE_LIVE ){ continue; }
+                final long hash = mIndex.getLong(base + SLOT_HASH);
+                final int length = mIndex.getInt(base + SLOT_LENGTH);
+                final long from = mIndex.getLong(base + SLOT_OFFSET);
+                long copied = 0;
+                while( copied < length ){
+                    long count = mData.transferTo(from + copied, length - copied, channel);
+                    if( count <= 0 ){ break; }
+                    copied += count;
+                }
+
+                int target = (int) (hash & (mSlotCount - 1));
+                while( index.getInt(slotBase(target) + SLOT_STATE) != STATE_EMPTY ){
+                    target = (target + 1) & (mSlotCount - 1);
+                }
+                final int newBase = slotBase(target);
+                index.putLong(newBase + SLOT_HASH, hash);
+                index.putLong(newBase + SLOT_OFFSET, position);
+                index.putInt(newBase + SLOT_LENGTH, length);
+                index.putLong(newBase + SLOT_ACCESS, mIndex.getLong(base + SLOT_ACCESS));
+                index.putInt(newBase + SLOT_STATE, STATE_LIVE);
+                position += length;
+            }
+            channel.force(false);
+        }finally {
+            out.close();
+        }
+
+        File temp = new File(mDirectory, INDEX_TEMP_NAME);
+        RandomAccessFile indexOut = new RandomAccessFile(temp, "rw");
+        try{
+            indexOut.setLength(0);
+            index.rewind();
+            FileChannel channel = indexOut.getChannel();
+            while( index.hasRemaining() ){
+                channel.write(index);
+            }
+            channel.force(true);
+        }finally {
+            indexOut.close();
+        }
+
+        File indexFile = new File(mDirectory, INDEX_NAME);
+        if( !temp.renameTo(indexFile) ){
+            newData.delete();
+            throw new IOException("Cannot replace " + indexFile);
+        }
+
+        mDataFile.close();
+        dataFile(mGeneration).delete();
+        mGeneration = generation;
+        map(indexFile);
+        openData(false);
+        mDeletedCount = 0;
+    }
+
+    private ByteBuffer header(long generation, long clock) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(INDEX_MAGIC).putInt(VERSION).putInt(mSlotCount).putInt(0);
+        header.putLong(generation).putLong(clock);
+        header.rewind();
+        return header;
+    }
+
+    /**
+     * @return The value if the record is complete and belongs to the key, null otherwise
+     */
+    private static byte[] readRecord(ByteBuffer record, byte[] keyBytes) {
+        if( record.position() < RECORD_HEADER_SIZE ){ return null; }
+        record.flip();
+        if( record.getInt() != RECORD_MAGIC || record.getInt() != keyBytes.length ){ return null; }
+        final int valueLength = record.getInt();
+        final int crcValue = record.getInt();
+        if( valueLength < 0 || record.remaining() != keyBytes.length + valueLength ){ return null; }
+
+        byte[] storedKey = new byte[keyBytes.length];
+        record.get(storedKey);
+        if( !Arrays.equals(storedKey, keyBytes) ){ return null; }
+        byte[] value = new byte[valueLength];
+        record.get(value);
+
+        CRC32 crc = new CRC32();
+        crc.update(storedKey);
+        crc.update(value);
+        return (int) crc.getValue() == crcValue ? value : null;
+    }
+
+    /**
+     * @return The live slot of the key, -1 if none. A slot of a colliding hash is told apart by the
+     * key of its record, and probing goes on past it.
+     */
+    private int findSlot(byte[] keyBytes, long hash) throws IOException {
+        if( mIndex == null ){
+            throw new IllegalStateException("Cache is closed");
+        }
+        int slot = (int) (hash & (mSlotCount - 1));
+        for( int i=0; i<mSlotCount; i++ ){
+            final int base = slotBase(slot);
+            final int state = mIndex.getInt(base + SLOT_STATE);
+            if( state == STATE_EMPTY ){ return -1; }
+            if( state == STATE_LIVE && mIndex.getLong(base + SLOT_HASH) == hash
+                    && recordHasKey(base, keyBytes) ){
+                return slot;
+            }
+            slot = (slot + 1) & (mSlotCount - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * @return Whether the record of the slot starts with a complete header and the key
+     */
+    private boolean recordHasKey(int base, byte[] keyBytes) throws IOException {
+        final int length = RECORD_HEADER_SIZE + keyBytes.length;
+        if( mIndex.getInt(base + SLOT_LENGTH) < length ){ return false; }
+        final ByteBuffer prefix = ByteBuffer.allocate(length);
+        readFully(prefix, mIndex.getLong(base + SLOT_OFFSET));
+        if( prefix.hasRemaining() ){ return false; }
+        prefix.flip();
+        if( prefix.getInt() != RECORD_MAGIC || prefix.getInt() != keyBytes.length ){ return false; }
+        prefix.position(RECORD_HEADER_SIZE);
+        for( byte b : keyBytes ){
+            if( prefix.get() != b ){ return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Fill the buffer from the data file, short only at its end.
+     */
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        final int start = buffer.position();
+        while( buffer.hasRemaining() ){
+            if( mData.read(buffer, offset + buffer.position() - start) < 0 ){ break; }
+        }
+    }
+
+    private int findFreeSlot(long hash) {
+        int slot = (int) (hash & (mSlotCount - 1));
+        while( mIndex.getInt(slotBase(slot) + SLOT_STATE) == STATE_LIVE ){
+            slot = (slot + 1) & (mSlotCount - 1);
+        }
+        return slot;
+    }
+
+    private void deleteSlot(int slot) {
+        final int base = slotBase(slot);
+        mIndex.putInt(base + SLOT_STATE, STATE_DELETED);
+        mLiveBytes -= mIndex.getInt(base + SLOT_LENGTH);
+        mLiveCount--;
+        mDeletedCount++;
+    }
+
+    private long nextAccess() {
+        long clock = mIndex.getLong(HEADER_CLOCK) + 1;
+        mIndex.putLong(HEADER_CLOCK, clock);
+        return clock;
+    }
+
+    private int indexSize() {
+        return HEADER_SIZE + mSlotCount * SLOT_SIZE;
+    }
+
+    private static int slotBase(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private File dataFile(long generation) {
+        return new File(mDirectory, DATA_PREFIX + generation);
+    }
+
+    private File[] listDataFiles() {
+        File[] files = mDirectory.listFiles();
+        if( files == null ){ return new File[0]; }
+        int n = 0;
+        for( File file : files ){
+            if( file.getName().startsWith(DATA_PREFIX) ){
+                files[n++] = file;
+            }
+        }
+        return Arrays.copyOf(files, n);
+    }
+
+    private void deleteOtherGenerations() {
+        final String current = DATA_PREFIX + mGeneration;
+        for( File file : listDataFiles() ){
+            if( !file.getName().equals(current) ){
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Positional reads of one record's value, valid while its data file generation is current.
+     */
+    private final class ValueChannel implements ReadableByteChannel {
+
+        private final long generation;
+        private final long end;
+        private long position;
+        private boolean open = true;
+
+        ValueChannel(long start, long end) {
+            this.generation = mGeneration;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            synchronized( DiskCache.this ){
+                if( !open || mData == null || mGeneration != generation ){
+                    throw new ClosedChannelException();
+                }
+                if( position >= end ){ return -1; }
+                final int limit = dst.limit();
+                dst.limit(dst.position() + (int) Math.min(dst.remaining(), end - position));
+                try{
+                    final int read = mData.read(dst, position);
+                    if( read > 0 ){ position += read; }
+                    return read;
+                }finally {
+                    dst.limit(limit);
+                }
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+
+    /**
+     * 64 bit FNV-1a of the key bytes.
+     */
+    private static long hash(byte[] keyBytes) {
+        long hash = 0xcbf29ce484222325L;
+        for( byte b : keyBytes ){
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+/**
+ * Velocity decaying exponentially with a fixed time constant, as in most kinetic scrolling on the
+ * web: the distance is velocity times the time constant, and most of it is covered early.
+ * The fling ends once less than half a pixel is left.
+ */
+public final class ExponentialFlingEngine implements FlingEngine {
+
+    public static final long DEFAULT_TIME_CONSTANT_MILLIS = 325L;
+
+    private final double mTimeConstantSeconds;
+
+    public ExponentialFlingEngine() {
+        this(DEFAULT_TIME_CONSTANT_MILLIS);
+    }
+
+    /**
+     * @param timeConstantMillis  Time for the velocity to drop to 1/e at friction 1
+     */
+    public ExponentialFlingEngine(long timeConstantMillis) {
+        if( timeConstantMillis <= 0L ){
+            throw new IllegalArgumentException("Time constant must be positive");
+        }
+        mTimeConstantSeconds = timeConstantMillis / 1000.0;
+    }
+
+    private double getTimeConstant(float friction) {
+        return mTimeConstantSeconds / friction;
+    }
+
+    /**
+     * @return Seconds until less than half a pixel is left
+     */
+    private double getDuration(float velocity, float friction) {
+        final double remaining = 2.0 * Math.abs(velocity) * getTimeConstant(friction);
+        return remaining > 1.0 ? getTimeConstant(friction) * Math.log(remaining) : 0.0;
+    }
+
+    @Override
+    public double getDistance(float velocity, float friction) {
+        if( friction <= 0f ){ return 0.0; }
+        return velocity * getTimeConstant(friction);
+    }
+
+    @Override
+    public long getDurationNanos(float velocity, float friction) {
+        if( friction <= 0f ){ return 0L; }
+        return (long) (getDuration(velocity, friction) * 1000000000.0);
+    }
+
+    /**
+     * Scaled to reach the whole distance at the end of the duration, rather than half a pixel short.
+     */
+    @Override
+    public double getProgress(float velocity, float friction, double timeFraction) {
+        if( timeFraction >= 1.0 ){ return 1.0; }
+        if( timeFraction <= 0.0 || friction <= 0f ){ return 0.0; }
+        final double end = getDuration(velocity, friction) / getTimeConstant(friction);
+        if( end <= 0.0 ){ return 1.0; }
+        return (1.0 - Math.exp(-timeFraction * end)) / (1.0 - Math.exp(-end));
+    }
+
+}
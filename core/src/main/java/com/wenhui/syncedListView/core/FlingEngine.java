@@ -0,0 +1,44 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+/**
+ * Physics of a fling as closed-form functions of its start velocity, so the end offset and the
+ * duration are known before the first frame. Implementations hold no fling state, one engine can
+ * drive every column; the state lives in {@link ColumnFling}.
+ *
+ * @see SplineFlingEngine
+ * @see ExponentialFlingEngine
+ */
+public interface FlingEngine {
+
+    /**
+     * @param velocity  Start velocity in pixels per second, positive moves the content up
+     * @param friction  Multiplier of the engine's friction, 1 for its default
+     * @return Signed distance travelled by the whole fling
+     */
+    double getDistance(float velocity, float friction);
+
+    long getDurationNanos(float velocity, float friction);
+
+    /**
+     * @param timeFraction  Elapsed part of the duration, from 0 to 1
+     * @return Part of the distance covered by then, from 0 to 1
+     */
+    double getProgress(float velocity, float friction, double timeFraction);
+
+}
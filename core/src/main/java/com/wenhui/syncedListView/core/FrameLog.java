@@ -0,0 +1,196 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Decodes a {@link FrameRecorder} file, oldest frame first. Plain Java, so a file pulled off a
+ * device can be read on a desktop:
+ *
+ * <pre>
+ * java -cp core.jar com.wenhui.syncedListView.core.FrameLog frames.bin &gt; frames.csv
+ * </pre>
+ */
+public final class FrameLog {
+
+    private final int mMaxColumns;
+    private final long[] mSequences;
+    private final long[] mFrameTimes;
+    private final long[] mIntervals;
+    private final int[] mModes;
+    private final int[] mColumnCounts;
+    private final long[] mScrollOffsets;
+    private final int[] mLayoutPasses;
+    private final int mCount;
+
+    /**
+     * @throws IOException  If the file is not a frame recording
+     */
+    public static FrameLog read(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try{
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE, channel.size()));
+            while( buffer.hasRemaining() && channel.read(buffer) >= 0 ){}
+            buffer.flip();
+            return new FrameLog(buffer);
+        }finally {
+            in.close();
+        }
+    }
+
+    private FrameLog(ByteBuffer buffer) throws IOException {
+        if( buffer.limit() < FrameRecorder.HEADER_SIZE || buffer.getInt(0) != FrameRecorder.MAGIC ){
+            throw new IOException("Not a frame recording");
+        }
+        if( buffer.getInt(4) != FrameRecorder.VERSION ){
+            throw new IOException("Unknown version " + buffer.getInt(4));
+        }
+        final int slotCount = buffer.getInt(FrameRecorder.HEADER_SLOTS);
+        mMaxColumns = buffer.getInt(FrameRecorder.HEADER_COLUMNS);
+        final int recordSize = FrameRecorder.recordSize(mMaxColumns);
+        if( slotCount <= 0 || mMaxColumns < 0
+                || buffer.limit() < FrameRecorder.HEADER_SIZE + (long) slotCount * recordSize ){
+            throw new IOException("Truncated frame recording");
+        }
+
+        final long next = buffer.getLong(FrameRecorder.HEADER_SEQUENCE);
+        final long first = Math.max(0L, next - slotCount);
+        final int capacity = (int) (next - first);
+        mSequences = new long[capacity];
+        mFrameTimes = new long[capacity];
+        mIntervals = new long[capacity];
+        mModes = new int[capacity];
+        mColumnCounts = new int[capacity];
+        mScrollOffsets = new long[capacity * mMaxColumns];
+        mLayoutPasses = new int[capacity * mMaxColumns];
+
+        int count = 0;
+        for( long sequence=first; sequence<next; sequence++ ){
+            final int base = FrameRecorder.HEADER_SIZE + (int) (sequence % slotCount) * recordSize;
+            // Skips a slot torn by a crash while it was written
+            if( buffer.getLong(base + FrameRecorder.RECORD_SEQUENCE) != sequence ){ continue; }
+
+            mSequences[count] = sequence;
+            mFrameTimes[count] = buffer.getLong(base + FrameRecorder.RECORD_TIME);
+            mIntervals[count] = buffer.getLong(base + FrameRecorder.RECORD_INTERVAL);
+            mModes[count] = buffer.getInt(base + FrameRecorder.RECORD_MODE);
+            final int columns = Math.max(0, Math.min(mMaxColumns,
+                    buffer.getInt(base + FrameRecorder.RECORD_COLUMN_COUNT)));
+            mColumnCounts[count] = columns;
+            for( int i=0; i<columns; i++ ){
+                final int column = base + FrameRecorder.RECORD_HEADER_SIZE + i * FrameRecorder.COLUMN_SIZE;
+                mScrollOffsets[count * mMaxColumns + i] = buffer.getLong(column + FrameRecorder.COLUMN_OFFSET);
+                mLayoutPasses[count * mMaxColumns + i] = buffer.getInt(column + FrameRecorder.COLUMN_LAYOUT_PASSES);
+            }
+            count++;
+        }
+        mCount = count;
+    }
+
+    public int getFrameCount() {
+        return mCount;
+    }
+
+    /**
+     * @return Position of the frame in the whole recording, gaps mark overwritten or torn frames
+     */
+    public long getSequence(int frame) {
+        return mSequences[frame];
+    }
+
+    public long getFrameTimeNanos(int frame) {
+        return mFrameTimes[frame];
+    }
+
+    public long getIntervalNanos(int frame) {
+        return mIntervals[frame];
+    }
+
+    /**
+     * @return One of the {@link ScrollMetrics} modes
+     */
+    public int getMode(int frame) {
+        return mModes[frame];
+    }
+
+    public int getColumnCount(int frame) {
+        return mColumnCounts[frame];
+    }
+
+    public long getScrollOffset(int frame, int column) {
+        checkColumn(frame, column);
+        return mScrollOffsets[frame * mMaxColumns + column];
+    }
+
+    public int getLayoutPasses(int frame, int column) {
+        checkColumn(frame, column);
+        return mLayoutPasses[frame * mMaxColumns + column];
+    }
+
+    private void checkColumn(int frame, int column) {
+        if( column < 0 || column >= mColumnCounts[frame] ){
+            throw new IndexOutOfBoundsException("Frame " + frame + " has no column " + column);
+        }
+    }
+
+    /**
+     * One line per frame: sequence, frame time and interval in nanoseconds, mode, then the offset
+     * and layout passes of each column.
+     */
+    public void printCsv(PrintStream out) {
+        StringBuilder line = new StringBuilder("sequence,time,interval,mode");
+        for( int i=0; i<mMaxColumns; i++ ){
+            line.append(",offset").append(i).append(",layouts").append(i);
+        }
+        out.println(line);
+        for( int frame=0; frame<mCount; frame++ ){
+            line.setLength(0);
+            line.append(mSequences[frame]).append(',').append(mFrameTimes[frame]).append(',')
+                    .append(mIntervals[frame]).append(',').append(modeName(mModes[frame]));
+            for( int i=0; i<mColumnCounts[frame]; i++ ){
+                line.append(',').append(getScrollOffset(frame, i))
+                        .append(',').append(getLayoutPasses(frame, i));
+            }
+            out.println(line);
+        }
+    }
+
+    private static String modeName(int mode) {
+        switch( mode ){
+            case ScrollMetrics.MODE_DRAG: return "drag";
+            case ScrollMetrics.MODE_FLING: return "fling";
+            case ScrollMetrics.MODE_AUTO_SCROLL: return "auto";
+            default: return String.valueOf(mode);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if( args.length != 1 ){
+            System.err.println("Usage: FrameLog <frame recording>");
+            System.exit(1);
+        }
+        read(new File(args[0])).printCsv(System.out);
+    }
+
+}
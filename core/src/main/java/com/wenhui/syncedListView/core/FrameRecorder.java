@@ -0,0 +1,186 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Frame records in a fixed size, memory-mapped ring buffer file, to find out afterwards what hours
+ * of scrolling looked like on a device. A record is a few absolute writes into the mapped file, so
+ * recording costs the same at any fill level, allocates nothing and never syncs; the kernel writes
+ * the pages back, and they survive the process dying. Read the file with {@link FrameLog}.
+ * <p>
+ * Each slot starts with the sequence number of its record, written last, so a reader skips a slot
+ * the writer was in the middle of. Not thread safe, record from one thread.
+ *
+ * <pre>
+ * Header:  magic, version, slot count, column count, next sequence (long)
+ * Record:  sequence (long), frame time (long), interval (long), mode, column count,
+ *          per column: scroll offset (long), layout passes (int)
+ * </pre>
+ */
+public final class FrameRecorder implements Closeable {
+
+    static final int MAGIC = 0x53464c47;
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 32;
+    static final int HEADER_SLOTS = 8;
+    static final int HEADER_COLUMNS = 12;
+    static final int HEADER_SEQUENCE = 16;
+
+    static final int RECORD_SEQUENCE = 0;
+    static final int RECORD_TIME = 8;
+    static final int RECORD_INTERVAL = 16;
+    static final int RECORD_MODE = 24;
+    static final int RECORD_COLUMN_COUNT = 28;
+    static final int RECORD_HEADER_SIZE = 32;
+    static final int COLUMN_OFFSET = 0;
+    static final int COLUMN_LAYOUT_PASSES = 8;
+    static final int COLUMN_SIZE = 12;
+
+    private final RandomAccessFile mFile;
+    private final MappedByteBuffer mBuffer;
+    private final int mSlotCount;
+    private final int mMaxColumns;
+    private final int mRecordSize;
+
+    private long mSequence;
+    private int mRecordBase = -1;
+    private int mColumnCount;
+
+    /**
+     * Open the file for recording, continuing its ring if it has the same geometry and starting
+     * over otherwise.
+     *
+     * @param slotCount  Records kept before the oldest is overwritten
+     * @param maxColumns  Columns recorded per frame, any further are left out
+     */
+    public static FrameRecorder open(File file, int slotCount, int maxColumns) throws IOException {
+        if( slotCount <= 0 || maxColumns < 0 ){
+            throw new IllegalArgumentException("Invalid geometry " + slotCount + "x" + maxColumns);
+        }
+        return new FrameRecorder(file, slotCount, maxColumns);
+    }
+
+    static int recordSize(int maxColumns) {
+        return RECORD_HEADER_SIZE + maxColumns * COLUMN_SIZE;
+    }
+
+    private FrameRecorder(File file, int slotCount, int maxColumns) throws IOException {
+        mSlotCount = slotCount;
+        mMaxColumns = maxColumns;
+        mRecordSize = recordSize(maxColumns);
+        final long size = HEADER_SIZE + (long) slotCount * mRecordSize;
+        if( size > Integer.MAX_VALUE ){
+            throw new IllegalArgumentException("Ring of " + size + " bytes is too large");
+        }
+
+        mFile = new RandomAccessFile(file, "rw");
+        try{
+            boolean reuse = mFile.length() == size;
+            mFile.setLength(size);
+            mBuffer = mFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            reuse = reuse && mBuffer.getInt(0) == MAGIC && mBuffer.getInt(4) == VERSION
+                    && mBuffer.getInt(HEADER_SLOTS) == slotCount
+                    && mBuffer.getInt(HEADER_COLUMNS) == maxColumns;
+            if( reuse ){
+                mSequence = Math.max(0L, mBuffer.getLong(HEADER_SEQUENCE));
+            } else {
+                for( int slot=0; slot<slotCount; slot++ ){
+                    mBuffer.putLong(slotBase(slot) + RECORD_SEQUENCE, -1L);
+                }
+                mBuffer.putInt(0, MAGIC);
+                mBuffer.putInt(4, VERSION);
+                mBuffer.putInt(HEADER_SLOTS, slotCount);
+                mBuffer.putInt(HEADER_COLUMNS, maxColumns);
+                mBuffer.putLong(HEADER_SEQUENCE, 0L);
+                mSequence = 0L;
+            }
+        }catch (IOException e){
+            mFile.close();
+            throw e;
+        }
+    }
+
+    private int slotBase(int slot) {
+        return HEADER_SIZE + slot * mRecordSize;
+    }
+
+    public int getMaxColumns() {
+        return mMaxColumns;
+    }
+
+    /**
+     * Start the next record, fill in its columns with {@link #putColumn(int, long, int)} and
+     * publish it with {@link #endFrame()}.
+     *
+     * @param intervalNanos  Time since the previous frame, 0 for the first frame of a run
+     * @param mode  One of the ScrollMetrics modes
+     */
+    public void beginFrame(long frameTimeNanos, long intervalNanos, int mode, int columnCount) {
+        final int base = slotBase((int) (mSequence % mSlotCount));
+        // Invalidate the slot before overwriting it
+        mBuffer.putLong(base + RECORD_SEQUENCE, -1L);
+        mBuffer.putLong(base + RECORD_TIME, frameTimeNanos);
+        mBuffer.putLong(base + RECORD_INTERVAL, intervalNanos);
+        mBuffer.putInt(base + RECORD_MODE, mode);
+        mColumnCount = Math.min(columnCount, mMaxColumns);
+        mBuffer.putInt(base + RECORD_COLUMN_COUNT, mColumnCount);
+        mRecordBase = base;
+    }
+
+    /**
+     * @param scrollOffset  Absolute content offset of the column, -1 if unknown
+     */
+    public void putColumn(int index, long scrollOffset, int layoutPasses) {
+        if( mRecordBase < 0 || index >= mColumnCount ){ return; }
+        final int base = mRecordBase + RECORD_HEADER_SIZE + index * COLUMN_SIZE;
+        mBuffer.putLong(base + COLUMN_OFFSET, scrollOffset);
+        mBuffer.putInt(base + COLUMN_LAYOUT_PASSES, layoutPasses);
+    }
+
+    public void endFrame() {
+        if( mRecordBase < 0 ){ return; }
+        mBuffer.putLong(mRecordBase + RECORD_SEQUENCE, mSequence);
+        mSequence++;
+        mBuffer.putLong(HEADER_SEQUENCE, mSequence);
+        mRecordBase = -1;
+    }
+
+    /**
+     * Write the records back to the file now, which blocks on disk. Not for the frame path.
+     */
+    public void flush() {
+        mBuffer.force();
+    }
+
+    /**
+     * Stop recording. The mapping stays valid until garbage collected, the records written so far
+     * reach the file either way.
+     */
+    @Override
+    public void close() throws IOException {
+        mFile.close();
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+import java.util.Arrays;
+
+/**
+ * Counts of values in fixed buckets. Recording only increments counters, so it can stay on in
+ * production; the bucket bounds are set once at construction.
+ */
+public final class Histogram {
+
+    private final long[] mUpperBounds;
+    private final long[] mCounts;
+    private long mTotal = 0;
+    private long mSum = 0;
+    private long mMax = 0;
+
+    /**
+     * @param upperBounds  Inclusive upper bound of each bucket in ascending order, an overflow
+     *                     bucket follows the last
+     */
+    public Histogram(long... upperBounds) {
+        mUpperBounds = upperBounds.clone();
+        for( int i=1; i<mUpperBounds.length; i++ ){
+            if( mUpperBounds[i] <= mUpperBounds[i - 1] ){
+                throw new IllegalArgumentException("Bucket bounds must ascend");
+            }
+        }
+        mCounts = new long[mUpperBounds.length + 1];
+    }
+
+    public void record(long value) {
+        int low = 0, high = mUpperBounds.length;
+        while( low < high ){
+            int mid = (low + high) >>> 1;
+            if( value <= mUpperBounds[mid] ){
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        mCounts[low]++;
+        mTotal++;
+        mSum += value;
+        if( value > mMax ){ mMax = value; }
+    }
+
+    /**
+     * @return Buckets including the overflow bucket
+     */
+    public int getBucketCount() {
+        return mCounts.length;
+    }
+
+    /**
+     * @return Inclusive upper bound of the bucket, {@link Long#MAX_VALUE} for the overflow bucket
+     */
+    public long getUpperBound(int bucket) {
+        return bucket < mUpperBounds.length ? mUpperBounds[bucket] : Long.MAX_VALUE;
+    }
+
+    public long getCount(int bucket) {
+        return mCounts[bucket];
+    }
+
+    public long getTotalCount() {
+        return mTotal;
+    }
+
+    public long getSum() {
+        return mSum;
+    }
+
+    public long getMax() {
+        return mMax;
+    }
+
+    public long getMean() {
+        return mTotal == 0 ? 0 : mSum / mTotal;
+    }
+
+    /**
+     * @param fraction  0.5 for the median, 0.99 for the 99th percentile
+     * @return Upper bound of the bucket holding the percentile, the maximum for the overflow bucket
+     */
+    public long getPercentile(double fraction) {
+        if( mTotal == 0 ){ return 0; }
+        long rank = (long) Math.ceil(fraction * mTotal);
+        long seen = 0;
+        for( int i=0; i<mCounts.length; i++ ){
+            seen += mCounts[i];
+            if( seen >= rank ){
+                return i < mUpperBounds.length ? Math.min(mUpperBounds[i], mMax) : mMax;
+            }
+        }
+        return mMax;
+    }
+
+    public void reset() {
+        Arrays.fill(mCounts, 0);
+        mTotal = 0;
+        mSum = 0;
+        mMax = 0;
+    }
+
+    /**
+     * Copy the counts into a histogram with the same buckets, without allocating.
+     */
+    public void copyTo(Histogram target) {
+        if( !Arrays.equals(mUpperBounds, target.mUpperBounds) ){
+            throw new IllegalArgumentException("Histograms have different buckets");
+        }
+        System.arraycopy(mCounts, 0, target.mCounts, 0, mCounts.length);
+        target.mTotal = mTotal;
+        target.mSum = mSum;
+        target.mMax = mMax;
+    }
+
+}
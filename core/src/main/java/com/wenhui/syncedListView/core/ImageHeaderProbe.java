@@ -0,0 +1,232 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Width and height of a JPEG, PNG or WebP image from its header alone. Reads go no further than
+ * the size field needs; JPEG segments in front of the frame header are skipped, by position on a
+ * {@link FileChannel} and by reading past them otherwise.
+ * <p>
+ * Dimensions are packed in a long, see {@link #getWidth(long)} and {@link #getHeight(long)}.
+ */
+public final class ImageHeaderProbe {
+
+    public static final long UNKNOWN = -1L;
+
+    private static final int BUFFER_SIZE = 64;
+
+    private ImageHeaderProbe(){}
+
+    public static long pack(int width, int height){
+        return ((long) width << 32) | (height & 0xffffffffL);
+    }
+
+    public static int getWidth(long dimensions){
+        return (int) (dimensions >>> 32);
+    }
+
+    public static int getHeight(long dimensions){
+        return (int) dimensions;
+    }
+
+    /**
+     * Read the dimensions from the channel's current position. The channel is not closed and is
+     * left a little past the header.
+     *
+     * @return Packed dimensions, or {@link #UNKNOWN} for another format or a broken header
+     */
+    public static long probe(ReadableByteChannel channel) throws IOException {
+        HeaderReader reader = new HeaderReader(channel);
+        if( !reader.require(12) ){ return UNKNOWN; }
+
+        final int b0 = reader.peek(0), b1 = reader.peek(1);
+        if( b0 == 0xff && b1 == 0xd8 ){
+            reader.skip(2);
+            return probeJpeg(reader);
+        }
+        if( b0 == 0x89 && b1 == 'P' && reader.peek(2) == 'N' && reader.peek(3) == 'G' ){
+            return probePng(reader);
+        }
+        if( b0 == 'R' && b1 == 'I' && reader.peek(2) == 'F' && reader.peek(3) == 'F'
+                && reader.peek(8) == 'W' && reader.peek(9) == 'E' && reader.peek(10) == 'B' && reader.peek(11) == 'P' ){
+            return probeWebp(reader);
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Signature, IHDR length and type, then width and height.
+     */
+    private static long probePng(HeaderReader reader) throws IOException {
+        if( !reader.require(24) ){ return UNKNOWN; }
+        if( reader.peek(12) != 'I' || reader.peek(13) != 'H' || reader.peek(14) != 'D' || reader.peek(15) != 'R' ){
+            return UNKNOWN;
+        }
+        return checked(reader.peekInt(16, ByteOrder.BIG_ENDIAN), reader.peekInt(20, ByteOrder.BIG_ENDIAN));
+    }
+
+    private static long probeWebp(HeaderReader reader) throws IOException {
+        if( !reader.require(30) ){ return UNKNOWN; }
+        if( reader.peek(12) != 'V' || reader.peek(13) != 'P' || reader.peek(14) != '8' ){ return UNKNOWN; }
+
+        final int type = reader.peek(15);
+        if( type == ' ' ){
+            // Lossy: frame tag, start code, then 14 bit width and height
+            return checked(uint16(reader, 26) & 0x3fff, uint16(reader, 28) & 0x3fff);
+        }
+        if( type == 'L' ){
+            // Lossless: signature byte, then 14 bit width and height minus one, packed
+            final int bits = reader.peekInt(21, ByteOrder.LITTLE_ENDIAN);
+            return checked((bits & 0x3fff) + 1, ((bits >> 14) & 0x3fff) + 1);
+        }
+        if( type == 'X' ){
+            // Extended: flags, then 24 bit canvas width and height minus one
+            return checked(uint24(reader, 24) + 1, uint24(reader, 27) + 1);
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Walk the segments after SOI up to the first start of frame.
+     */
+    private static long probeJpeg(HeaderReader reader) throws IOException {
+        while( true ){
+            if( reader.read() != 0xff ){ return UNKNOWN; }
+            int marker;
+            do{
+                // Markers may be padded with any number of 0xff
+                marker = reader.read();
+            } while( marker == 0xff );
+            if( marker < 0 || marker == 0xd9 || marker == 0xda ){ return UNKNOWN; }
+            if( marker == 0x01 || (marker >= 0xd0 && marker <= 0xd7) ){
+                // No length
+                continue;
+            }
+
+            if( !reader.require(2) ){ return UNKNOWN; }
+            final int length = uint16Big(reader, 0);
+            if( length < 2 ){ return UNKNOWN; }
+            if( isStartOfFrame(marker) ){
+                // Length, precision, height, width
+                if( !reader.require(7) ){ return UNKNOWN; }
+                return checked(uint16Big(reader, 5), uint16Big(reader, 3));
+            }
+            if( !reader.skip(length) ){ return UNKNOWN; }
+        }
+    }
+
+    private static boolean isStartOfFrame(int marker){
+        return marker >= 0xc0 && marker <= 0xcf && marker != 0xc4 && marker != 0xc8 && marker != 0xcc;
+    }
+
+    private static int uint16(HeaderReader reader, int index){
+        return reader.peek(index) | (reader.peek(index + 1) << 8);
+    }
+
+    private static int uint16Big(HeaderReader reader, int index){
+        return (reader.peek(index) << 8) | reader.peek(index + 1);
+    }
+
+    private static int uint24(HeaderReader reader, int index){
+        return reader.peek(index) | (reader.peek(index + 1) << 8) | (reader.peek(index + 2) << 16);
+    }
+
+    private static long checked(int width, int height){
+        if( width <= 0 || height <= 0 ){ return UNKNOWN; }
+        return pack(width, height);
+    }
+
+    /**
+     * Small window over the channel, refilled only as far as a field needs.
+     */
+    private static final class HeaderReader {
+
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        HeaderReader(ReadableByteChannel channel){
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        /**
+         * Make sure count bytes are available past the read position.
+         */
+        boolean require(int count) throws IOException {
+            if( buffer.remaining() >= count ){ return true; }
+            buffer.compact();
+            while( buffer.position() < count ){
+                if( channel.read(buffer) < 0 ){
+                    buffer.flip();
+                    return false;
+                }
+            }
+            buffer.flip();
+            return true;
+        }
+
+        /**
+         * @param index  Relative to the read position, within what {@link #require(int)} made
+         *               available
+         */
+        int peek(int index){
+            return buffer.get(buffer.position() + index) & 0xff;
+        }
+
+        int peekInt(int index, ByteOrder order){
+            buffer.order(order);
+            return buffer.getInt(buffer.position() + index);
+        }
+
+        /**
+         * @return The next byte, -1 at the end
+         */
+        int read() throws IOException {
+            if( !require(1) ){ return -1; }
+            return buffer.get() & 0xff;
+        }
+
+        boolean skip(long count) throws IOException {
+            final int buffered = (int) Math.min(count, buffer.remaining());
+            buffer.position(buffer.position() + buffered);
+            count -= buffered;
+            if( count == 0 ){ return true; }
+
+            if( channel instanceof FileChannel ){
+                FileChannel file = (FileChannel) channel;
+                file.position(file.position() + count);
+                return true;
+            }
+            ByteBuffer scratch = ByteBuffer.allocate((int) Math.min(count, 4096));
+            while( count > 0 ){
+                scratch.clear();
+                scratch.limit((int) Math.min(count, scratch.capacity()));
+                int read = channel.read(scratch);
+                if( read < 0 ){ return false; }
+                count -= read;
+            }
+            return true;
+        }
+    }
+
+}
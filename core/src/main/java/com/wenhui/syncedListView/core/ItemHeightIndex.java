@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+import java.util.Arrays;
+
+/**
+ * Absolute content offsets of a column's rows, from the heights measured so far. Rows not measured
+ * yet count as the average measured height. Two Fenwick trees, one of measured heights and one of
+ * measured counts, give position to offset and offset to position in O(log n).
+ * <p>
+ * A wrapping index repeats its rows endlessly like an InfiniteListAdapter, so positions and
+ * offsets past the first cycle are folded onto it.
+ */
+public final class ItemHeightIndex {
+
+    private final int mItemCount;
+    private final boolean mWrap;
+    private final int mDefaultHeight;
+    private final int[] mHeights;
+    private final long[] mHeightTree;
+    private final int[] mCountTree;
+    private long mMeasuredHeight = 0;
+    private int mMeasuredCount = 0;
+
+    /**
+     * @param itemCount  Distinct rows, the real item count of an infinite adapter
+     * @param wrap  Whether the rows repeat endlessly
+     * @param defaultHeight  Height of a row while none is measured
+     */
+    public ItemHeightIndex(int itemCount, boolean wrap, int defaultHeight){
+        mItemCount = itemCount;
+        mWrap = wrap;
+        mDefaultHeight = Math.max(1, defaultHeight);
+        mHeights = new int[itemCount];
+        Arrays.fill(mHeights, -1);
+        mHeightTree = new long[itemCount + 1];
+        mCountTree = new int[itemCount + 1];
+    }
+
+    public int getItemCount(){
+        return mItemCount;
+    }
+
+    public boolean isWrapping(){
+        return mWrap;
+    }
+
+    /**
+     * Record the measured height of a row, O(log n) when it changed.
+     */
+    public void setHeight(int position, int height){
+        final int index = fold(position);
+        final int old = mHeights[index];
+        if( old == height ){ return; }
+
+        final long heightDelta = old < 0 ? height : height - old;
+        final int countDelta = old < 0 ? 1 : 0;
+        mHeights[index] = height;
+        mMeasuredHeight += heightDelta;
+        mMeasuredCount += countDelta;
+        for( int i=index + 1; i<=mItemCount; i += i & -i ){
+            mHeightTree[i] += heightDelta;
+            mCountTree[i] += countDelta;
+        }
+    }
+
+    public boolean isMeasured(int position){
+        return mHeights[fold(position)] >= 0;
+    }
+
+    /**
+     * Height used for rows not measured yet.
+     */
+    public int getEstimatedHeight(){
+        if( mMeasuredCount == 0 ){ return mDefaultHeight; }
+        return Math.max(1, (int) (mMeasuredHeight / mMeasuredCount));
+    }
+
+    /**
+     * Height of one cycle of the rows.
+     */
+    public long getTotalHeight(){
+        return mMeasuredHeight + (long) (mItemCount - mMeasuredCount) * getEstimatedHeight();
+    }
+
+    /**
+     * @return Content offset of the top of the row
+     */
+    public long offsetOf(long position){
+        if( mItemCount == 0 || position <= 0 ){ return 0; }
+        if( !mWrap ){
+            return prefix((int) Math.min(position, mItemCount));
+        }
+        long cycles = position / mItemCount;
+        return cycles * getTotalHeight() + prefix((int) (position % mItemCount));
+    }
+
+    /**
+     * @return The row covering the content offset
+     */
+    public long positionAt(long offset){
+        if( mItemCount == 0 || offset <= 0 ){ return 0; }
+        if( !mWrap ){
+            return find(offset);
+        }
+        long total = getTotalHeight();
+        // Every row measured at height 0, nothing to cycle through
+        if( total == 0 ){ return 0; }
+        long cycles = offset / total;
+        return cycles * mItemCount + find(offset % total);
+    }
+
+    /**
+     * Combined height of the rows in [0, end).
+     */
+    private long prefix(int end){
+        final int estimate = getEstimatedHeight();
+        long height = 0;
+        int count = 0;
+        for( int i=end; i>0; i -= i & -i ){
+            height += mHeightTree[i];
+            count += mCountTree[i];
+        }
+        return height + (long) (end - count) * estimate;
+    }
+
+    /**
+     * Fenwick descent, the node reached with step s covers s rows.
+     */
+    private int find(long offset){
+        final int estimate = getEstimatedHeight();
+        int position = 0;
+        long height = 0;
+        for( int step = Integer.highestOneBit(mItemCount); step > 0; step >>= 1 ){
+            int next = position + step;
+            if( next > mItemCount ){ continue; }
+            long candidate = height + mHeightTree[next] + (long) (step - mCountTree[next]) * estimate;
+            if( candidate <= offset ){
+                position = next;
+                height = candidate;
+            }
+        }
+        return Math.min(position, mItemCount - 1);
+    }
+
+    private int fold(long position){
+        return (int) (position % mItemCount);
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+/**
+ * The rows a column will bring into view as it travels a known distance, each handed out once.
+ * The window keeps a frontier past the last position it returned, so repeated updates along the
+ * same trajectory only return rows it has not returned before.
+ */
+public final class PrefetchWindow {
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private long mNext = NONE;
+    private int mDirection = 0;
+    private long mFirst, mLast;
+
+    /**
+     * @param index  Row heights of the column
+     * @param offset  Current content offset, see {@link ColumnScrollState#getScrollOffset()}
+     * @param viewport  Visible height of the column
+     * @param distance  Distance the column will travel, positive moves the content up
+     * @param maxCount  Most rows to return from this update
+     * @return true if there are new rows, from {@link #getFirst()} to {@link #getLast()} in travel
+     * order
+     */
+    public boolean update(ItemHeightIndex index, long offset, int viewport, double distance, int maxCount){
+        final int direction = distance > 0 ? 1 : (distance < 0 ? -1 : 0);
+        if( direction == 0 || maxCount <= 0 || index.getItemCount() == 0 ){ return false; }
+        if( direction != mDirection ){
+            mDirection = direction;
+            mNext = NONE;
+        }
+
+        final long lastPosition = index.isWrapping() ? Long.MAX_VALUE : index.getItemCount() - 1;
+        long from, to;
+        if( direction > 0 ){
+            long visibleLast = index.positionAt(offset + Math.max(0, viewport - 1));
+            long target = Math.min(lastPosition, index.positionAt(offset + Math.max(0, viewport - 1) + (long) distance));
+            // A jump makes the frontier stale, start over from the viewport
+            from = (mNext == NONE || mNext <= visibleLast || mNext > target + 1) ? visibleLast + 1 : mNext;
+            to = Math.min(target, from + maxCount - 1);
+            if( from > to ){ return false; }
+            mNext = to + 1;
+        } else {
+            long visibleFirst = index.positionAt(offset);
+            long target = index.positionAt(Math.max(0L, offset + (long) distance));
+            from = (mNext == NONE || mNext >= visibleFirst || mNext < target - 1) ? visibleFirst - 1 : mNext;
+            to = Math.max(target, from - maxCount + 1);
+            if( from < to || from < 0 ){ return false; }
+            mNext = to - 1;
+        }
+        mFirst = from;
+        mLast = to;
+        return true;
+    }
+
+    /**
+     * First new row of the last update, nearest to the viewport.
+     */
+    public long getFirst(){
+        return mFirst;
+    }
+
+    /**
+     * Last new row of the last update, furthest from the viewport. Below {@link #getFirst()} when
+     * travelling backwards.
+     */
+    public long getLast(){
+        return mLast;
+    }
+
+    /**
+     * Forget what was returned, after a data change.
+     */
+    public void reset(){
+        mNext = NONE;
+        mDirection = 0;
+    }
+
+}
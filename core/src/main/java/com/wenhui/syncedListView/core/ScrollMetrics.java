@@ -0,0 +1,218 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+/**
+ * Frame timing and per column cost of a synced layout. The layout records into its own instance
+ * on the main thread; read it there, or {@link #copyTo(ScrollMetrics)} a snapshot. Recording does
+ * not allocate except when a column is added.
+ */
+public final class ScrollMetrics {
+
+    public static final int MODE_DRAG = 0;
+    public static final int MODE_FLING = 1;
+    public static final int MODE_AUTO_SCROLL = 2;
+    private static final int MODE_COUNT = 3;
+
+    private static final long MS = 1000000L;
+    private static final long US = 1000L;
+
+    /**
+     * Per column counters.
+     */
+    public static final class Column {
+
+        private final Histogram mLayoutPasses = new Histogram(0, 1, 2, 3);
+        private final Histogram mScrollTime = newScrollTimeHistogram();
+        private long mViewsRecycled = 0;
+        private long mViewsCreated = 0;
+
+        /**
+         * @return Layout passes of the column per frame, 0 to 3 and more
+         */
+        public Histogram getLayoutPasses() {
+            return mLayoutPasses;
+        }
+
+        /**
+         * @return Nanoseconds the column spent applying each frame's scroll
+         */
+        public Histogram getScrollTime() {
+            return mScrollTime;
+        }
+
+        /**
+         * @return Rows bound into a recycled view
+         */
+        public long getViewsRecycled() {
+            return mViewsRecycled;
+        }
+
+        /**
+         * @return Rows that needed a new view
+         */
+        public long getViewsCreated() {
+            return mViewsCreated;
+        }
+
+        public void recordLayoutPasses(int passes) {
+            mLayoutPasses.record(passes);
+        }
+
+        public void recordScrollTime(long nanos) {
+            mScrollTime.record(nanos);
+        }
+
+        public void recordGetView(boolean recycled) {
+            if( recycled ){
+                mViewsRecycled++;
+            } else {
+                mViewsCreated++;
+            }
+        }
+
+        void reset() {
+            mLayoutPasses.reset();
+            mScrollTime.reset();
+            mViewsRecycled = 0;
+            mViewsCreated = 0;
+        }
+
+        void copyTo(Column target) {
+            mLayoutPasses.copyTo(target.mLayoutPasses);
+            mScrollTime.copyTo(target.mScrollTime);
+            target.mViewsRecycled = mViewsRecycled;
+            target.mViewsCreated = mViewsCreated;
+        }
+    }
+
+    private final Histogram mFrameIntervals = new Histogram(
+            4 * MS, 8 * MS, 12 * MS, 17 * MS, 20 * MS, 25 * MS, 34 * MS, 50 * MS, 67 * MS, 100 * MS, 250 * MS);
+    private final Histogram mScrollTime = newScrollTimeHistogram();
+    private final Histogram mTouchLatency = new Histogram(
+            4 * MS, 8 * MS, 12 * MS, 17 * MS, 25 * MS, 34 * MS, 50 * MS, 67 * MS, 100 * MS);
+    private final long[] mFrames = new long[MODE_COUNT];
+    private final long[] mDroppedFrames = new long[MODE_COUNT];
+    private Column[] mColumns = new Column[0];
+
+    private static Histogram newScrollTimeHistogram() {
+        return new Histogram(50 * US, 100 * US, 250 * US, 500 * US, MS, 2 * MS, 4 * MS, 8 * MS, 16 * MS);
+    }
+
+    /**
+     * @return Nanoseconds between consecutive frames while the layout animates
+     */
+    public Histogram getFrameIntervals() {
+        return mFrameIntervals;
+    }
+
+    /**
+     * @return Nanoseconds all columns spent applying each frame's scroll
+     */
+    public Histogram getScrollTime() {
+        return mScrollTime;
+    }
+
+    /**
+     * @return Nanoseconds from the newest touch sample a drag frame applied to the end of applying
+     * it, whether or not the drag predicts ahead of that sample
+     */
+    public Histogram getTouchLatency() {
+        return mTouchLatency;
+    }
+
+    /**
+     * @param mode  {@link #MODE_DRAG}, {@link #MODE_FLING} or {@link #MODE_AUTO_SCROLL}
+     */
+    public long getFrames(int mode) {
+        return mFrames[mode];
+    }
+
+    /**
+     * @return Frames the display showed without the layout moving, while it should have
+     */
+    public long getDroppedFrames(int mode) {
+        return mDroppedFrames[mode];
+    }
+
+    public int getColumnCount() {
+        return mColumns.length;
+    }
+
+    public Column getColumn(int index) {
+        return mColumns[index];
+    }
+
+    /**
+     * @param intervalNanos  Time since the previous frame, 0 for the first frame of an animation
+     * @param dropped  Frames missed since the previous frame
+     */
+    public void recordFrame(int mode, long intervalNanos, int dropped) {
+        mFrames[mode]++;
+        mDroppedFrames[mode] += dropped;
+        if( intervalNanos > 0 ){
+            mFrameIntervals.record(intervalNanos);
+        }
+    }
+
+    public void recordScrollTime(long nanos) {
+        mScrollTime.record(nanos);
+    }
+
+    public void recordTouchLatency(long nanos) {
+        mTouchLatency.record(nanos);
+    }
+
+    /**
+     * Make room for the columns, the only time recording allocates.
+     */
+    public void ensureColumns(int count) {
+        if( count <= mColumns.length ){ return; }
+        Column[] columns = new Column[count];
+        System.arraycopy(mColumns, 0, columns, 0, mColumns.length);
+        for( int i=mColumns.length; i<count; i++ ){
+            columns[i] = new Column();
+        }
+        mColumns = columns;
+    }
+
+    public void reset() {
+        mFrameIntervals.reset();
+        mScrollTime.reset();
+        mTouchLatency.reset();
+        for( int i=0; i<MODE_COUNT; i++ ){
+            mFrames[i] = 0;
+            mDroppedFrames[i] = 0;
+        }
+        for( Column column : mColumns ){
+            column.reset();
+        }
+    }
+
+    public void copyTo(ScrollMetrics target) {
+        mFrameIntervals.copyTo(target.mFrameIntervals);
+        mScrollTime.copyTo(target.mScrollTime);
+        mTouchLatency.copyTo(target.mTouchLatency);
+        System.arraycopy(mFrames, 0, target.mFrames, 0, MODE_COUNT);
+        System.arraycopy(mDroppedFrames, 0, target.mDroppedFrames, 0, MODE_COUNT);
+        target.ensureColumns(mColumns.length);
+        for( int i=0; i<mColumns.length; i++ ){
+            mColumns[i].copyTo(target.mColumns[i]);
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+/**
+ * The deceleration of the platform's Scroller and OverScroller: the duration and distance follow
+ * from the start velocity and friction, and the position follows a fixed spline over that time.
+ */
+public final class SplineFlingEngine implements FlingEngine {
+
+    /** ViewConfiguration's default scroll friction */
+    public static final float DEFAULT_FRICTION = 0.015f;
+
+    private static final float DECELERATION_RATE = (float) (Math.log(0.78) / Math.log(0.9));
+    private static final float INFLEXION = 0.35f;
+    private static final float START_TENSION = 0.5f;
+    private static final float END_TENSION = 1.0f;
+    private static final float P1 = START_TENSION * INFLEXION;
+    private static final float P2 = 1.0f - END_TENSION * (1.0f - INFLEXION);
+    private static final float GRAVITY_EARTH = 9.80665f;
+
+    private static final int SAMPLES = 100;
+    private static final float[] SPLINE_POSITION = new float[SAMPLES + 1];
+
+    static {
+        float xMin = 0.0f;
+        for( int i=0; i<SAMPLES; i++ ){
+            final float alpha = (float) i / SAMPLES;
+            float xMax = 1.0f;
+            float x, tx, coef;
+            while( true ){
+                x = xMin + (xMax - xMin) / 2.0f;
+                coef = 3.0f * x * (1.0f - x);
+                tx = coef * ((1.0f - x) * P1 + x * P2) + x * x * x;
+                if( Math.abs(tx - alpha) < 1E-5 ){ break; }
+                if( tx > alpha ){
+                    xMax = x;
+                } else {
+                    xMin = x;
+                }
+            }
+            SPLINE_POSITION[i] = coef * ((1.0f - x) * START_TENSION + x) + x * x * x;
+        }
+        SPLINE_POSITION[SAMPLES] = 1.0f;
+    }
+
+    private final float mPhysicalCoeff;
+    private final float mFriction;
+
+    /**
+     * @param pixelsPerInch  Display density times 160
+     */
+    public SplineFlingEngine(float pixelsPerInch) {
+        this(pixelsPerInch, DEFAULT_FRICTION);
+    }
+
+    public SplineFlingEngine(float pixelsPerInch, float friction) {
+        // Inches per meter, and a tuned deceleration
+        mPhysicalCoeff = GRAVITY_EARTH * 39.37f * pixelsPerInch * 0.84f;
+        mFriction = friction;
+    }
+
+    private double getSplineDeceleration(float velocity, float friction) {
+        return Math.log(INFLEXION * Math.abs(velocity) / (mFriction * friction * mPhysicalCoeff));
+    }
+
+    @Override
+    public double getDistance(float velocity, float friction) {
+        if( velocity == 0f || friction <= 0f ){ return 0.0; }
+        final double l = getSplineDeceleration(velocity, friction);
+        final double decelMinusOne = DECELERATION_RATE - 1.0;
+        return Math.signum(velocity) * mFriction * friction * mPhysicalCoeff
+                * Math.exp(DECELERATION_RATE / decelMinusOne * l);
+    }
+
+    @Override
+    public long getDurationNanos(float velocity, float friction) {
+        if( velocity == 0f || friction <= 0f ){ return 0L; }
+        final double l = getSplineDeceleration(velocity, friction);
+        return (long) (1000000000.0 * Math.exp(l / (DECELERATION_RATE - 1.0)));
+    }
+
+    @Override
+    public double getProgress(float velocity, float friction, double timeFraction) {
+        if( timeFraction >= 1.0 ){ return 1.0; }
+        if( timeFraction <= 0.0 ){ return 0.0; }
+        final int index = (int) (SAMPLES * timeFraction);
+        final double tInf = (double) index / SAMPLES;
+        final double dInf = SPLINE_POSITION[index];
+        final double dSup = SPLINE_POSITION[index + 1];
+        return dInf + (timeFraction - tInf) * (dSup - dInf) * SAMPLES;
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+/**
+ * Predicts where a dragging finger will be at a later time from its recent samples, so a drag can
+ * be drawn where the finger is when the frame reaches the display rather than where it was. The
+ * velocity is a least squares fit over the samples of the last few frames, and the extrapolation
+ * is capped, so a finger coming to rest costs at most a small overshoot that the next frames take
+ * back. Keeps its samples in a fixed ring, recording allocates nothing.
+ */
+public final class TouchPredictor {
+
+    private static final int CAPACITY = 16;
+    /** Samples older than this, counted back from the latest, do not enter the fit */
+    private static final long WINDOW_NANOS = 50000000L;
+    private static final long MAX_PREDICTION_NANOS = 20000000L;
+
+    private final long[] mTimes = new long[CAPACITY];
+    private final float[] mPositions = new float[CAPACITY];
+    /** Index of the latest sample */
+    private int mHead = -1;
+    private int mCount = 0;
+
+    public void reset() {
+        mHead = -1;
+        mCount = 0;
+    }
+
+    public boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    /**
+     * @param timeNanos  Time of the sample, at or after the previous one
+     */
+    public void addSample(long timeNanos, float position) {
+        if( mCount > 0 && timeNanos <= mTimes[mHead] ){
+            // Same timestamp, keep the newer position
+            mPositions[mHead] = position;
+            return;
+        }
+        mHead = (mHead + 1) % CAPACITY;
+        mTimes[mHead] = timeNanos;
+        mPositions[mHead] = position;
+        if( mCount < CAPACITY ){ mCount++; }
+    }
+
+    public float getLatest() {
+        return mPositions[mHead];
+    }
+
+    public long getLatestTimeNanos() {
+        return mTimes[mHead];
+    }
+
+    /**
+     * @return Expected position at the time, the latest sample if the finger looks at rest
+     */
+    public float predict(long timeNanos) {
+        if( mCount == 0 ){
+            throw new IllegalStateException("No samples");
+        }
+        final long latestTime = mTimes[mHead];
+        final float latest = mPositions[mHead];
+        final long ahead = Math.min(timeNanos - latestTime, MAX_PREDICTION_NANOS);
+        if( ahead <= 0L || timeNanos - latestTime > WINDOW_NANOS ){ return latest; }
+
+        // Fit position over time in milliseconds before the latest sample
+        int n = 0;
+        double sumT = 0, sumP = 0, sumTT = 0, sumTP = 0;
+        for( int i=0; i<mCount; i++ ){
+            final int index = (mHead - i + CAPACITY) % CAPACITY;
+            final long age = latestTime - mTimes[index];
+            if( age > WINDOW_NANOS ){ break; }
+            final double t = -age / 1e6;
+            final double p = mPositions[index] - latest;
+            n++;
+            sumT += t;
+            sumP += p;
+            sumTT += t * t;
+            sumTP += t * p;
+        }
+        final double denominator = n * sumTT - sumT * sumT;
+        if( n < 2 || denominator == 0.0 ){ return latest; }
+        final double velocity = (n * sumTP - sumT * sumP) / denominator;
+        return (float) (latest + velocity * (ahead / 1e6));
+    }
+
+}
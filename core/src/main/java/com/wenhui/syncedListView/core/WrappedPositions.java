@@ -0,0 +1,52 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+/**
+ * Position mapping of endlessly wrapping adapters, which report {@link Integer#MAX_VALUE} rows and
+ * repeat their real items.
+ */
+public final class WrappedPositions {
+
+    private WrappedPositions(){}
+
+    /**
+     * @return Row count reported to the view for this many real items
+     */
+    public static int getWrappedCount(int itemCount){
+        if( itemCount <= 0 ) {
+            return 0;
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    public static int getRealPosition(int position, int itemCount){
+        if( itemCount <= 0 ){ return 0; }
+        return position % itemCount;
+    }
+
+    /**
+     * @return Position of the first real item near the middle of the wrapped range, so the content
+     * can scroll a long way in both directions
+     */
+    public static int getMiddlePosition(int itemCount){
+        if( itemCount <= 0 ){ return 0; }
+        int middle = Integer.MAX_VALUE / 2;
+        return middle - middle % itemCount;
+    }
+
+}
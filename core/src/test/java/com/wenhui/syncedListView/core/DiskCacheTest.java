@@ -0,0 +1,247 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round trips, header reads, eviction, compaction and what a reopen recovers after a crash left
+ * the data file short or a record torn.
+ */
+public class DiskCacheTest {
+
+    private File mDirectory;
+    private DiskCache mCache;
+
+    @Before
+    public void setUp() throws Exception {
+        mDirectory = File.createTempFile("diskcache", "");
+        mDirectory.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if( mCache != null ){ mCache.close(); }
+        File[] files = mDirectory.listFiles();
+        if( files != null ){
+            for( File file : files ){
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void valuesSurviveReopen() throws Exception {
+        mCache = DiskCache.open(mDirectory, 1024 * 1024, 100);
+        mCache.put("a", value(1, 100));
+        mCache.put("b", value(2, 3000));
+        mCache.put("a", value(3, 50));
+        assertArrayEquals(value(3, 50), mCache.get("a"));
+        assertNull(mCache.get("missing"));
+
+        reopen(1024 * 1024, 100);
+        assertArrayEquals(value(3, 50), mCache.get("a"));
+        assertArrayEquals(value(2, 3000), mCache.get("b"));
+        assertEquals(2, mCache.count());
+        assertTrue(mCache.remove("b"));
+        assertFalse(mCache.contains("b"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedPastTheBytes() throws Exception {
+        // Records of 16 header bytes, 1 key byte and 200 value bytes, four fit. Eviction goes down
+        // to 9/10 of the budget, one record below it.
+        mCache = DiskCache.open(mDirectory, 1000, 100);
+        for( char key='a'; key<='d'; key++ ){
+            mCache.put(String.valueOf(key), value(key, 200));
+        }
+        mCache.get("a");
+        mCache.put("e", value('e', 200));
+
+        assertNull(mCache.get("b"));
+        for( String key : new String[]{ "a", "c", "d", "e" } ){
+            assertArrayEquals(value(key.charAt(0), 200), mCache.get(key));
+        }
+        assertEquals(4 * 217, mCache.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedPastTheCount() throws Exception {
+        mCache = DiskCache.open(mDirectory, 1024 * 1024, 10);
+        for( int i=0; i<10; i++ ){
+            mCache.put("k" + i, value(i, 10));
+        }
+        mCache.get("k0");
+        mCache.put("k10", value(10, 10));
+
+        // Down to 9 entries, the two least recently used go
+        assertEquals(9, mCache.count());
+        assertNull(mCache.get("k1"));
+        assertNull(mCache.get("k2"));
+        assertArrayEquals(value(0, 10), mCache.get("k0"));
+        assertArrayEquals(value(10, 10), mCache.get("k10"));
+    }
+
+    @Test
+    public void compactsIntoTheNextGeneration() throws Exception {
+        mCache = DiskCache.open(mDirectory, 512 * 1024, 100);
+        mCache.put("kept", value(7, 1000));
+        // Each overwrite leaves its predecessor as garbage, past 1 MB the file is compacted
+        for( int i=0; i<12; i++ ){
+            mCache.put("big", value(i, 100 * 1024));
+        }
+        assertFalse(new File(mDirectory, "data.0").exists());
+        assertTrue(new File(mDirectory, "data.1").exists());
+        assertTrue(new File(mDirectory, "data.1").length() < 1024 * 1024);
+
+        assertArrayEquals(value(7, 1000), mCache.get("kept"));
+        assertArrayEquals(value(11, 100 * 1024), mCache.get("big"));
+        reopen(512 * 1024, 100);
+        assertArrayEquals(value(7, 1000), mCache.get("kept"));
+        assertArrayEquals(value(11, 100 * 1024), mCache.get("big"));
+    }
+
+    @Test
+    public void deletionsOfAFullCacheDoNotCompact() throws Exception {
+        mCache = DiskCache.open(mDirectory, 1024 * 1024, 1500);
+        for( int i=0; i<1500; i++ ){
+            mCache.put("k" + i, value(i, 8));
+        }
+        for( int i=0; i<1000; i++ ){
+            mCache.remove("k" + i);
+            mCache.put("n" + i, value(i, 8));
+        }
+        assertTrue(new File(mDirectory, "data.0").exists());
+        assertEquals(1500, mCache.count());
+    }
+
+    @Test
+    public void rejectsMoreEntriesThanTheIndexAddresses() throws Exception {
+        try{
+            mCache = DiskCache.open(mDirectory, 1024 * 1024, DiskCache.MAX_ENTRIES + 1);
+            assertTrue("Opened with " + (DiskCache.MAX_ENTRIES + 1) + " entries", false);
+        }catch (IllegalArgumentException expected){
+        }
+    }
+
+    @Test
+    public void recoversFromATruncatedDataFile() throws Exception {
+        mCache = DiskCache.open(mDirectory, 1024 * 1024, 100);
+        mCache.put("a", value(1, 100));
+        mCache.put("b", value(2, 100));
+        mCache.close();
+        mCache = null;
+
+        // The tail of b never reached the disk
+        truncate(new File(mDirectory, "data.0"), 117 + 50);
+        reopen(1024 * 1024, 100);
+        assertArrayEquals(value(1, 100), mCache.get("a"));
+        assertNull(mCache.get("b"));
+        assertEquals(1, mCache.count());
+
+        mCache.put("b", value(3, 100));
+        reopen(1024 * 1024, 100);
+        assertArrayEquals(value(3, 100), mCache.get("b"));
+    }
+
+    @Test
+    public void dropsATornRecord() throws Exception {
+        mCache = DiskCache.open(mDirectory, 1024 * 1024, 100);
+        mCache.put("a", value(1, 100));
+        mCache.put("b", value(2, 100));
+        mCache.close();
+        mCache = null;
+
+        // A value byte of b that did not make it, the CRC no longer matches
+        RandomAccessFile data = new RandomAccessFile(new File(mDirectory, "data.0"), "rw");
+        try{
+            data.seek(117 + 17 + 40);
+            data.write(0x55);
+        }finally {
+            data.close();
+        }
+        reopen(1024 * 1024, 100);
+        assertNull(mCache.get("b"));
+        assertFalse(mCache.contains("b"));
+        assertArrayEquals(value(1, 100), mCache.get("a"));
+        assertEquals(1, mCache.count());
+    }
+
+    @Test
+    public void readsTheStartOfAValue() throws Exception {
+        mCache = DiskCache.open(mDirectory, 1024 * 1024, 100);
+        // PNG signature and IHDR of a 300x200 image, then the rest of the file
+        ByteBuffer png = ByteBuffer.allocate(64 * 1024);
+        png.put(new byte[]{ (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0, 0, 0, 13, 'I', 'H', 'D', 'R' });
+        png.putInt(300).putInt(200);
+        mCache.put("image", png.array());
+
+        ReadableByteChannel channel = mCache.openValue("image");
+        try{
+            assertEquals(ImageHeaderProbe.pack(300, 200), ImageHeaderProbe.probe(channel));
+        }finally {
+            channel.close();
+        }
+        assertNull(mCache.openValue("missing"));
+
+        channel = mCache.openValue("image");
+        ByteBuffer all = ByteBuffer.allocate(png.capacity() + 1);
+        while( channel.read(all) >= 0 ){}
+        channel.close();
+        assertEquals(png.capacity(), all.position());
+    }
+
+    private void reopen(long maxBytes, int maxEntries) throws IOException {
+        if( mCache != null ){ mCache.close(); }
+        mCache = DiskCache.open(mDirectory, maxBytes, maxEntries);
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try{
+            out.setLength(length);
+        }finally {
+            out.close();
+        }
+    }
+
+    private static byte[] value(int seed, int length) {
+        byte[] value = new byte[length];
+        Arrays.fill(value, (byte) seed);
+        for( int i=0; i<length; i+=7 ){
+            value[i] = (byte) (seed + i);
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the per-frame work of drags, flings and auto scrolls over several columns for thousands of
+ * frames through the {@link ColumnSync} steps the engine calls, and fails if any of it allocates. Needs a JVM that counts allocated bytes per thread,
+ * it is skipped elsewhere.
+ */
+public class FrameAllocationTest {
+
+    private static final int COLUMNS = 4;
+    private static final int FRAMES = 5000;
+    private static final long FRAME_NANOS = 16666667L;
+    private static final int MAX_PREFETCH = 8;
+
+    private com.sun.management.ThreadMXBean mThreads;
+    private final ColumnSync<TestColumn> mColumns = new ColumnSync<TestColumn>();
+    private final ScrollMetrics mMetrics = new ScrollMetrics();
+    private final AutoScrollClock mClock = new AutoScrollClock(60000);
+    private final FlingEngine mFlingEngine = new SplineFlingEngine(420f);
+    private final TouchPredictor mPredictor = new TouchPredictor();
+    private float mTouchY = 0f;
+    private float mAppliedTouchY = 0f;
+    private File mRecordingFile;
+    private FrameRecorder mRecorder;
+    private long mFrameTime = FRAME_NANOS;
+
+    /**
+     * A column over rows of varying heights, scrolled by whole pixels like a view.
+     */
+    private static final class TestColumn extends ColumnScrollState {
+
+        final ItemHeightIndex index;
+        long offset = 0L;
+        float translation;
+        int prefetched;
+        ScrollMetrics.Column metrics;
+
+        TestColumn(float scrollFactor, float animationFactor, boolean wrap) {
+            super(scrollFactor, animationFactor);
+            index = new ItemHeightIndex(500, wrap, 200);
+        }
+
+        @Override
+        public void scrollBy(int deltaY) {
+            offset = Math.max(0L, offset + deltaY);
+            countLayoutPass();
+            // Rows entering the viewport get measured
+            final long first = index.positionAt(offset);
+            for( long position=first; position<first + 4; position++ ){
+                int row = WrappedPositions.getRealPosition((int) (position % Integer.MAX_VALUE), index.getItemCount());
+                index.setHeight(row, 150 + row % 7 * 20);
+                if( metrics != null ){ metrics.recordGetView(true); }
+            }
+        }
+
+        @Override
+        public void setTranslationOffset(float offset) {
+            translation = offset;
+        }
+
+        @Override
+        public void attachMetrics(ScrollMetrics.Column metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public ItemHeightIndex getHeightIndex() {
+            return index;
+        }
+
+        @Override
+        public int getViewportHeight() {
+            return 1000;
+        }
+
+        @Override
+        public boolean canPrefetch() {
+            return true;
+        }
+
+        @Override
+        public void prefetch(int position) {
+            prefetched++;
+        }
+
+        @Override
+        public long getScrollOffset() {
+            return offset;
+        }
+
+        @Override
+        public long getMaxScrollOffset() {
+            return index.isWrapping() ? UNBOUNDED : Math.max(0L, index.getTotalHeight() - 1000);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        mThreads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(mThreads.isThreadAllocatedMemorySupported());
+        mThreads.setThreadAllocatedMemoryEnabled(true);
+
+        for( int i=0; i<COLUMNS; i++ ){
+            TestColumn column = new TestColumn(0.6f + i * 0.3f, 1f + i * 0.5f, i % 2 == 0);
+            column.setFlingFriction(1f + i * 0.25f);
+            mColumns.add(column);
+        }
+        mMetrics.ensureColumns(COLUMNS);
+        mRecordingFile = File.createTempFile("frames", ".bin");
+        mRecorder = FrameRecorder.open(mRecordingFile, 256, COLUMNS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if( mRecorder != null ){ mRecorder.close(); }
+        if( mRecordingFile != null ){ mRecordingFile.delete(); }
+    }
+
+    @Test
+    public void dragDoesNotAllocate() {
+        assertNoAllocation(ScrollMetrics.MODE_DRAG);
+    }
+
+    @Test
+    public void flingDoesNotAllocate() {
+        assertNoAllocation(ScrollMetrics.MODE_FLING);
+    }
+
+    @Test
+    public void autoScrollDoesNotAllocate() {
+        assertNoAllocation(ScrollMetrics.MODE_AUTO_SCROLL);
+        assertTrue(mColumns.get(0).prefetched > 0);
+    }
+
+    private void assertNoAllocation(int mode) {
+        final long thread = Thread.currentThread().getId();
+        // Warm up, so class loading and lazy initialization are not counted
+        runFrames(mode, FRAMES);
+        mThreads.getThreadAllocatedBytes(thread);
+
+        final long before = mThreads.getThreadAllocatedBytes(thread);
+        runFrames(mode, FRAMES);
+        final long allocated = mThreads.getThreadAllocatedBytes(thread) - before;
+        // The smallest object takes 16 bytes, so an allocating frame path costs at least 16 bytes a
+        // frame. Less than a byte a frame is the JIT changing tiers on this thread.
+        assertTrue("Allocated " + allocated + " bytes over " + FRAMES + " frames", allocated < FRAMES);
+    }
+
+    private void runFrames(int mode, int frames) {
+        mClock.reset();
+        for( int frame=0; frame<frames; frame++ ){
+            mFrameTime += FRAME_NANOS;
+            switch( mode ){
+                case ScrollMetrics.MODE_DRAG:
+                    // Two touch samples a frame, alternating directions so finite columns keep
+                    // moving, applied where the prediction puts the finger
+                    for( int sample=1; sample>=0; sample-- ){
+                        mTouchY -= (frame / 500 % 2 == 0 ? 1 : -1) * 3.65f;
+                        mPredictor.addSample(mFrameTime - sample * FRAME_NANOS / 2, mTouchY);
+                    }
+                    float target = mPredictor.predict(mFrameTime + FRAME_NANOS);
+                    mColumns.accumulate(mAppliedTouchY - target, false);
+                    mAppliedTouchY = target;
+                    mMetrics.recordTouchLatency(FRAME_NANOS / 2);
+                    break;
+                case ScrollMetrics.MODE_FLING:
+                    if( !mColumns.stepFlings(mFrameTime) ){
+                        startFling(frame / 100 % 2 == 0 ? 4000f : -4000f);
+                    }
+                    break;
+                default:
+                    mColumns.accumulate(mClock.advance(mFrameTime), true);
+                    break;
+            }
+            doFrame(mode, mode == ScrollMetrics.MODE_AUTO_SCROLL);
+        }
+    }
+
+    /**
+     * Start every column's fling like the engine, which snaps, bounds and prefetches its landing.
+     */
+    private void startFling(float velocity) {
+        for( int i=0, count=mColumns.size(); i<count; i++ ){
+            TestColumn column = mColumns.get(i);
+            ColumnFling fling = column.getFling();
+            fling.start(mFlingEngine, velocity, column.getFlingFriction(), column.getScrollFactor(), mFrameTime);
+            if( fling.isFinished() ){ continue; }
+            mColumns.landFling(column, true, true, MAX_PREFETCH);
+        }
+    }
+
+    /**
+     * The column steps of the engine's frame, in its order. Auto scrolls translate while they can.
+     */
+    private void doFrame(int mode, boolean animating) {
+        mColumns.recordFrame(mMetrics, mRecorder, mFrameTime, mode, FRAME_NANOS, FRAME_NANOS, FRAME_NANOS);
+        mColumns.flush(animating, mMetrics);
+        if( animating ){
+            mColumns.prefetch((double) mClock.getVelocity() * 1000000000L / AutoScrollClock.MINUTE_NANOS,
+                    MAX_PREFETCH);
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Minimal headers of every format, read both from a file, where JPEG segments are skipped by
+ * position, and from a stream, where they are read past.
+ */
+public class ImageHeaderProbeTest {
+
+    @Test
+    public void readsPng() throws IOException {
+        ByteBuffer png = header(24, ByteOrder.BIG_ENDIAN);
+        png.put(new byte[]{ (byte) 0x89, 'P', 'N', 'G', 0x0d, 0x0a, 0x1a, 0x0a });
+        png.putInt(13).put(new byte[]{ 'I', 'H', 'D', 'R' }).putInt(640).putInt(480);
+        assertDimensions(640, 480, png);
+    }
+
+    @Test
+    public void readsLossyWebp() throws IOException {
+        ByteBuffer webp = webp(' ');
+        webp.position(23);
+        webp.put((byte) 0x9d).put((byte) 0x01).put((byte) 0x2a);
+        // Scale bits above the 14 bit sizes are ignored
+        webp.putShort((short) (0x4000 | 1000)).putShort((short) 750);
+        assertDimensions(1000, 750, webp);
+    }
+
+    @Test
+    public void readsLosslessWebp() throws IOException {
+        ByteBuffer webp = webp('L');
+        webp.position(20);
+        webp.put((byte) 0x2f).putInt((1000 - 1) | ((750 - 1) << 14));
+        assertDimensions(1000, 750, webp);
+    }
+
+    @Test
+    public void readsExtendedWebp() throws IOException {
+        ByteBuffer webp = webp('X');
+        webp.position(24);
+        putUint24(webp, 20000 - 1);
+        putUint24(webp, 300 - 1);
+        assertDimensions(20000, 300, webp);
+    }
+
+    @Test
+    public void skipsJpegSegmentsBeforeTheFrame() throws IOException {
+        ByteBuffer jpeg = header(2 + 18 + 5004 + 19, ByteOrder.BIG_ENDIAN);
+        jpeg.put((byte) 0xff).put((byte) 0xd8);
+        // JFIF, then a segment longer than the probe's buffer
+        jpeg.put((byte) 0xff).put((byte) 0xe0).putShort((short) 16).position(jpeg.position() + 14);
+        jpeg.put((byte) 0xff).put((byte) 0xe1).putShort((short) 5002).position(jpeg.position() + 5000);
+        // Fill bytes before the marker are allowed
+        jpeg.put((byte) 0xff).put((byte) 0xff).put((byte) 0xc0).putShort((short) 17).put((byte) 8);
+        jpeg.putShort((short) 600).putShort((short) 800);
+        assertDimensions(800, 600, jpeg);
+    }
+
+    @Test
+    public void truncatedHeadersAreUnknown() throws IOException {
+        ByteBuffer png = header(24, ByteOrder.BIG_ENDIAN);
+        png.put(new byte[]{ (byte) 0x89, 'P', 'N', 'G', 0x0d, 0x0a, 0x1a, 0x0a });
+        png.putInt(13).put(new byte[]{ 'I', 'H', 'D', 'R' }).putInt(640).putInt(480);
+        assertUnknown(Arrays.copyOf(png.array(), 20));
+
+        ByteBuffer jpeg = header(2 + 4 + 100, ByteOrder.BIG_ENDIAN);
+        jpeg.put((byte) 0xff).put((byte) 0xd8);
+        jpeg.put((byte) 0xff).put((byte) 0xe1).putShort((short) 5002);
+        assertUnknown(jpeg.array());
+
+        assertUnknown(new byte[]{ (byte) 0xff, (byte) 0xd8 });
+    }
+
+    @Test
+    public void otherFormatsAreUnknown() throws IOException {
+        assertUnknown("GIF89a......".getBytes("US-ASCII"));
+    }
+
+    private static ByteBuffer header(int size, ByteOrder order){
+        return ByteBuffer.allocate(size).order(order);
+    }
+
+    /**
+     * RIFF container of a single VP8 chunk of the given type, sized for the probe.
+     */
+    private static ByteBuffer webp(char type){
+        ByteBuffer webp = header(30, ByteOrder.LITTLE_ENDIAN);
+        webp.put(new byte[]{ 'R', 'I', 'F', 'F' }).putInt(22).put(new byte[]{ 'W', 'E', 'B', 'P' });
+        webp.put(new byte[]{ 'V', 'P', '8', (byte) type }).putInt(10);
+        return webp;
+    }
+
+    private static void putUint24(ByteBuffer buffer, int value){
+        buffer.put((byte) value).put((byte) (value >> 8)).put((byte) (value >> 16));
+    }
+
+    private static void assertDimensions(int width, int height, ByteBuffer header) throws IOException {
+        final long expected = ImageHeaderProbe.pack(width, height);
+        assertEquals(expected, probeStream(header.array()));
+        assertEquals(expected, probeFile(header.array()));
+    }
+
+    private static void assertUnknown(byte[] header) throws IOException {
+        assertEquals(ImageHeaderProbe.UNKNOWN, probeStream(header));
+        assertEquals(ImageHeaderProbe.UNKNOWN, probeFile(header));
+    }
+
+    private static long probeStream(byte[] header) throws IOException {
+        return ImageHeaderProbe.probe(Channels.newChannel(new ByteArrayInputStream(header)));
+    }
+
+    private static long probeFile(byte[] header) throws IOException {
+        File file = File.createTempFile("header", ".img");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(header);
+            } finally {
+                out.close();
+            }
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = in.getChannel();
+                return ImageHeaderProbe.probe(channel);
+            } finally {
+                in.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+}
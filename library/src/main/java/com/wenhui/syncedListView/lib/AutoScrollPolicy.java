@@ -0,0 +1,41 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+/**
+ * Decides how often the auto scroll updates for the device's power state. The distance travelled
+ * is derived from the frame time, so a lower rate moves the content at the same speed in fewer,
+ * larger steps.
+ *
+ * @see PowerAwareAutoScrollPolicy
+ */
+public interface AutoScrollPolicy {
+
+    /** Update on every displayed frame */
+    int RATE_DISPLAY = Integer.MAX_VALUE;
+
+    /** Pause the auto scroll until the state changes */
+    int RATE_PAUSED = 0;
+
+    /**
+     * Called on the main thread whenever the state changes.
+     *
+     * @return Updates per second, {@link #RATE_DISPLAY} or {@link #RATE_PAUSED}
+     */
+    int getUpdateRate(PowerState state);
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.support.v4.graphics.BitmapCompat;
+import android.support.v4.util.LruCache;
+
+/**
+ * Decoded images by key, bounded in bytes and evicted least recently used. A bitmap leaving the
+ * cache goes to the {@link BitmapPool} for reuse once no row displays it. Synced columns repeat
+ * the same items on every loop, so a cache holding one loop hits every time after the first.
+ * <p>
+ * Register it with {@link Context#registerComponentCallbacks(android.content.ComponentCallbacks)}
+ * to give memory back when the system asks. Main thread only.
+ */
+public class BitmapCache implements ComponentCallbacks2 {
+
+    static final class Entry {
+        final String key;
+        final Bitmap bitmap;
+        int bindCount = 0;
+        boolean evicted = false;
+
+        Entry(String key, Bitmap bitmap) {
+            this.key = key;
+            this.bitmap = bitmap;
+        }
+    }
+
+    private final LruCache<String, Entry> mCache;
+    private final BitmapPool mPool;
+
+    /**
+     * @param maxBytes  Budget of the cache, the reuse pool gets a quarter of it on top
+     */
+    public BitmapCache(int maxBytes) {
+        mPool = new BitmapPool(maxBytes / 4);
+        mCache = new LruCache<String, Entry>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return BitmapCompat.getAllocationByteCount(entry.bitmap);
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Entry oldEntry, Entry newEntry) {
+                oldEntry.evicted = true;
+                if( oldEntry.bindCount == 0 ){
+                    mPool.put(oldEntry.bitmap);
+                }
+            }
+        };
+    }
+
+    /**
+     * @return An eighth of the app's memory class, a common budget for a visible image wall
+     */
+    public static int getDefaultSize(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        return am.getMemoryClass() * 1024 * 1024 / 8;
+    }
+
+    public BitmapPool getPool() {
+        return mPool;
+    }
+
+    public Bitmap get(String key) {
+        Entry entry = mCache.get(key);
+        return entry == null ? null : entry.bitmap;
+    }
+
+    public void evictAll() {
+        mCache.evictAll();
+        mPool.clear();
+    }
+
+    Entry getEntry(String key) {
+        return mCache.get(key);
+    }
+
+    /**
+     * @return The new entry, already held once for the caller so an oversized bitmap is not
+     * pooled while the caller is about to show it, see {@link #release(Entry)}
+     */
+    Entry put(String key, Bitmap bitmap) {
+        Entry entry = new Entry(key, bitmap);
+        entry.bindCount = 1;
+        mCache.put(key, entry);
+        return entry;
+    }
+
+    /**
+     * A row stopped displaying the entry's bitmap.
+     */
+    void release(Entry entry) {
+        entry.bindCount--;
+        if( entry.bindCount == 0 && entry.evicted ){
+            mPool.put(entry.bitmap);
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if( level >= TRIM_MEMORY_MODERATE ){
+            evictAll();
+        } else if( level >= TRIM_MEMORY_BACKGROUND ){
+            mCache.trimToSize(mCache.maxSize() / 2);
+            mPool.clear();
+        } else if( level >= TRIM_MEMORY_RUNNING_LOW ){
+            mPool.clear();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.graphics.Bitmap;
+import android.support.v4.graphics.BitmapCompat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Bitmaps no longer shown, kept to be decoded into again through
+ * {@link android.graphics.BitmapFactory.Options#inBitmap}. Keyed by exact size and config, which
+ * every API level accepts for reuse. The oldest bitmaps are recycled past the byte budget.
+ * Thread safe.
+ */
+public final class BitmapPool {
+
+    private final int mMaxBytes;
+    private final HashMap<Long, ArrayList<Bitmap>> mBySize = new HashMap<Long, ArrayList<Bitmap>>();
+    private final ArrayDeque<Bitmap> mOrder = new ArrayDeque<Bitmap>();
+    private int mBytes = 0;
+
+    public BitmapPool(int maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Hand over a bitmap nothing displays anymore.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if( bitmap == null || bitmap.isRecycled() ){ return; }
+        final int size = BitmapCompat.getAllocationByteCount(bitmap);
+        if( !bitmap.isMutable() || size > mMaxBytes ){
+            bitmap.recycle();
+            return;
+        }
+
+        Long key = key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        ArrayList<Bitmap> bitmaps = mBySize.get(key);
+        if( bitmaps == null ){
+            bitmaps = new ArrayList<Bitmap>();
+            mBySize.put(key, bitmaps);
+        }
+        bitmaps.add(bitmap);
+        mOrder.addLast(bitmap);
+        mBytes += size;
+
+        while( mBytes > mMaxBytes ){
+            Bitmap oldest = mOrder.removeFirst();
+            mBySize.get(key(oldest.getWidth(), oldest.getHeight(), oldest.getConfig())).remove(oldest);
+            mBytes -= BitmapCompat.getAllocationByteCount(oldest);
+            oldest.recycle();
+        }
+    }
+
+    /**
+     * @return A bitmap of exactly this size and config to decode into, removed from the pool, or
+     * null
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        ArrayList<Bitmap> bitmaps = mBySize.get(key(width, height, config));
+        if( bitmaps == null || bitmaps.isEmpty() ){ return null; }
+        Bitmap bitmap = bitmaps.remove(bitmaps.size() - 1);
+        mOrder.remove(bitmap);
+        mBytes -= BitmapCompat.getAllocationByteCount(bitmap);
+        return bitmap;
+    }
+
+    public synchronized void clear() {
+        for( Bitmap bitmap : mOrder ){
+            bitmap.recycle();
+        }
+        mOrder.clear();
+        mBySize.clear();
+        mBytes = 0;
+    }
+
+    public synchronized int getSize() {
+        return mBytes;
+    }
+
+    private static Long key(int width, int height, Bitmap.Config config) {
+        int ordinal = config == null ? 0 : config.ordinal() + 1;
+        return ((long) ordinal << 56) | ((long) width << 28) | height;
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.v4.view.ViewCompat;
+import android.view.Choreographer;
+import android.view.View;
+
+/**
+ * Schedules at most one callback per displayed frame. Uses {@link Choreographer} from Jelly Bean,
+ * and falls back to {@link ViewCompat#postOnAnimation(View, Runnable)} before that.
+ */
+abstract class FrameTicker {
+
+    interface Callback {
+        /**
+         * @param frameTimeNanos  Time the frame started rendering, in {@link System#nanoTime()} base
+         */
+        void doFrame(long frameTimeNanos);
+    }
+
+    static FrameTicker create(View view, Callback callback){
+        if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN ){
+            return new ChoreographerTicker(callback);
+        }
+        return new LegacyTicker(view, callback);
+    }
+
+    private final Callback mCallback;
+    private boolean mScheduled = false;
+    private boolean mDelayed = false;
+
+    FrameTicker(Callback callback){
+        mCallback = callback;
+    }
+
+    /**
+     * Request a callback on the next frame, does nothing when one is already pending. A pending
+     * delayed callback is brought forward.
+     */
+    final void schedule(){
+        if( mScheduled ){
+            if( !mDelayed ){ return; }
+            removeFrame();
+        }
+        mScheduled = true;
+        mDelayed = false;
+        postFrame();
+    }
+
+    /**
+     * Request a callback on the first frame after the delay, does nothing when one is already
+     * pending.
+     */
+    final void scheduleDelayed(long delayMillis){
+        if( mScheduled ){ return; }
+        mScheduled = true;
+        mDelayed = true;
+        postFrameDelayed(delayMillis);
+    }
+
+    final void cancel(){
+        if( !mScheduled ){ return; }
+        mScheduled = false;
+        mDelayed = false;
+        removeFrame();
+    }
+
+    final boolean isScheduled(){
+        return mScheduled;
+    }
+
+    final void dispatchFrame(long frameTimeNanos){
+        mScheduled = false;
+        mDelayed = false;
+        mCallback.doFrame(frameTimeNanos);
+    }
+
+    abstract void postFrame();
+    abstract void postFrameDelayed(long delayMillis);
+    abstract void removeFrame();
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class ChoreographerTicker extends FrameTicker implements Choreographer.FrameCallback {
+
+        private final Choreographer choreographer = Choreographer.getInstance();
+
+        ChoreographerTicker(Callback callback){
+            super(callback);
+        }
+
+        @Override
+        void postFrame() {
+            choreographer.postFrameCallback(this);
+        }
+
+        @Override
+        void postFrameDelayed(long delayMillis) {
+            choreographer.postFrameCallbackDelayed(this, delayMillis);
+        }
+
+        @Override
+        void removeFrame() {
+            choreographer.removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            dispatchFrame(frameTimeNanos);
+        }
+    }
+
+    private static class LegacyTicker extends FrameTicker implements Runnable {
+
+        private final View view;
+
+        LegacyTicker(View view, Callback callback){
+            super(callback);
+            this.view = view;
+        }
+
+        @Override
+        void postFrame() {
+            ViewCompat.postOnAnimation(view, this);
+        }
+
+        @Override
+        void postFrameDelayed(long delayMillis) {
+            ViewCompat.postOnAnimationDelayed(view, this, delayMillis);
+        }
+
+        @Override
+        void removeFrame() {
+            view.removeCallbacks(this);
+        }
+
+        @Override
+        public void run() {
+            dispatchFrame(System.nanoTime());
+        }
+    }
+
+}
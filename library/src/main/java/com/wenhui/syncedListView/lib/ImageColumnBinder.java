@@ -0,0 +1,284 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.util.Log;
+import android.view.View;
+import android.widget.ImageView;
+
+import com.wenhui.syncedListView.core.DimensionCache;
+import com.wenhui.syncedListView.core.DiskCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+
+/**
+ * Binds images into the rows of one column, typically from an {@link InfiniteListAdapter}'s
+ * getItemView(). Hits come from the {@link BitmapCache} right away. Misses are decoded on a
+ * {@link RowTaskScheduler} at the target size, from the optional {@link DiskCache} before the
+ * {@link ImageSource}, into a pooled bitmap when one fits, nearest rows
+ * first, and dropped if the row is recycled before they finish.
+ */
+public class ImageColumnBinder {
+
+    private static final String TAG = "ImageColumnBinder";
+    private static final int DEFAULT_THREADS = 2;
+
+    private final ImageSource mSource;
+    private final BitmapCache mCache;
+    private final RowTaskScheduler mScheduler;
+    private final HashMap<ImageView, BitmapCache.Entry> mShown = new HashMap<ImageView, BitmapCache.Entry>();
+    private int mTargetWidth = 0, mTargetHeight = 0;
+    private Bitmap.Config mConfig = Bitmap.Config.ARGB_8888;
+    private Drawable mPlaceholder;
+    private DiskCache mDiskCache;
+    private DimensionCache mDimensionCache;
+
+    /**
+     * @param column  The column view, a ListView or a synced layout
+     * @param cache  May be shared by several binders
+     */
+    public ImageColumnBinder(View column, ImageSource source, BitmapCache cache) {
+        mSource = source;
+        mCache = cache;
+        mScheduler = new RowTaskScheduler(column, DEFAULT_THREADS);
+    }
+
+    public RowTaskScheduler getScheduler() {
+        return mScheduler;
+    }
+
+    /**
+     * Images are subsampled down to no less than this size, 0 keeps the full size.
+     */
+    public void setTargetSize(int width, int height) {
+        mTargetWidth = width;
+        mTargetHeight = height;
+    }
+
+    /**
+     * {@link Bitmap.Config#RGB_565} halves the memory of opaque thumbnails.
+     */
+    public void setBitmapConfig(Bitmap.Config config) {
+        mConfig = config;
+    }
+
+    /**
+     * Keep the encoded images on disk too, so they need no network after a restart. The cache
+     * may be shared by several binders, it is not closed by {@link #shutdown()}.
+     */
+    public void setDiskCache(DiskCache diskCache) {
+        mDiskCache = diskCache;
+    }
+
+    /**
+     * Record the dimensions of every decoded image, for an {@link ImageDimensionProbe} sharing the
+     * cache.
+     */
+    public void setDimensionCache(DimensionCache dimensionCache) {
+        mDimensionCache = dimensionCache;
+    }
+
+    /**
+     * Shown while an image loads.
+     */
+    public void setPlaceholder(Drawable placeholder) {
+        mPlaceholder = placeholder;
+    }
+
+    /**
+     * @param position  Adapter position of the row, orders the loads. The real position passed to
+     *                  an {@link InfiniteListAdapter}'s getItemView() works as well.
+     * @param key  Cache key and {@link ImageSource} key of the image, null to clear the view
+     */
+    public void bind(ImageView view, int position, String key) {
+        unbind(view);
+        if( key == null ){
+            view.setImageDrawable(null);
+            return;
+        }
+
+        BitmapCache.Entry entry = mCache.getEntry(key);
+        if( entry != null ){
+            entry.bindCount++;
+            show(view, entry);
+            return;
+        }
+        view.setImageDrawable(mPlaceholder);
+        mScheduler.submit(view, position, new DecodeTask(key));
+    }
+
+    /**
+     * Cancel the view's load and release its bitmap to the cache, which may reuse it, so the view
+     * is cleared.
+     */
+    public void unbind(ImageView view) {
+        mScheduler.cancel(view);
+        BitmapCache.Entry entry = mShown.remove(view);
+        if( entry != null ){
+            view.setImageDrawable(null);
+            mCache.release(entry);
+        }
+    }
+
+    /**
+     * Cancel every load and stop the worker threads.
+     */
+    public void shutdown() {
+        mScheduler.shutdown();
+    }
+
+    /**
+     * @param entry  Already held for the view
+     */
+    private void show(ImageView view, BitmapCache.Entry entry) {
+        mShown.put(view, entry);
+        view.setImageBitmap(entry.bitmap);
+    }
+
+    private Bitmap decode(String key) throws IOException {
+        final byte[] data = load(key);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if( options.outWidth <= 0 || options.outHeight <= 0 ){ return null; }
+        final DimensionCache dimensionCache = mDimensionCache;
+        if( dimensionCache != null ){
+            dimensionCache.put(key, options.outWidth, options.outHeight);
+        }
+
+        final int sampleSize = sampleSize(options.outWidth, options.outHeight);
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = mConfig;
+        options.inMutable = true;
+
+        // Before KitKat a reused bitmap must match exactly and the image must not be subsampled
+        Bitmap reuse = null;
+        if( sampleSize == 1 || Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT ){
+            reuse = mCache.getPool().get(options.outWidth / sampleSize, options.outHeight / sampleSize, mConfig);
+        }
+        options.inBitmap = reuse;
+        try{
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }catch (IllegalArgumentException e){
+            if( reuse == null ){ throw e; }
+            mCache.getPool().put(reuse);
+            options.inBitmap = null;
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+    }
+
+    private int sampleSize(int width, int height) {
+        if( mTargetWidth <= 0 || mTargetHeight <= 0 ){ return 1; }
+        int sampleSize = 1;
+        while( width / (sampleSize * 2) >= mTargetWidth && height / (sampleSize * 2) >= mTargetHeight ){
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private byte[] load(String key) throws IOException {
+        final DiskCache diskCache = mDiskCache;
+        if( diskCache == null ){
+            return readFully(key);
+        }
+
+        byte[] data = null;
+        try{
+            data = diskCache.get(key);
+        }catch (IOException e){
+            Log.w(TAG, "Cannot read " + key + " from disk cache", e);
+        }
+        if( data != null ){ return data; }
+
+        data = readFully(key);
+        try{
+            diskCache.put(key, data);
+        }catch (IOException e){
+            Log.w(TAG, "Cannot write " + key + " to disk cache", e);
+        }
+        return data;
+    }
+
+    private byte[] readFully(String key) throws IOException {
+        InputStream in = mSource.open(key);
+        try{
+            ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+            byte[] buffer = new byte[8 * 1024];
+            int read;
+            while( (read = in.read(buffer)) != -1 ){
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }finally {
+            in.close();
+        }
+    }
+
+    private class DecodeTask extends RowTask<Bitmap> {
+
+        private final String key;
+
+        DecodeTask(String key) {
+            this.key = key;
+        }
+
+        @Override
+        protected Bitmap doInBackground() {
+            try{
+                return decode(key);
+            }catch (IOException e){
+                Log.w(TAG, "Cannot load " + key, e);
+                return null;
+            }
+        }
+
+        @Override
+        protected void onResult(View row, Bitmap bitmap) {
+            if( bitmap == null ){ return; }
+            BitmapCache.Entry entry = mCache.getEntry(key);
+            if( entry == null ){
+                entry = mCache.put(key, bitmap);
+            } else {
+                // Another row decoded the same image first
+                entry.bindCount++;
+                mCache.getPool().put(bitmap);
+            }
+            show((ImageView) row, entry);
+        }
+
+        /**
+         * The row moved on, but columns loop, so the image is cached for when it comes back.
+         */
+        @Override
+        protected void onDiscarded(Bitmap bitmap) {
+            if( mCache.getEntry(key) == null ){
+                mCache.release(mCache.put(key, bitmap));
+            } else {
+                mCache.getPool().put(bitmap);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.wenhui.syncedListView.core.DimensionCache;
+import com.wenhui.syncedListView.core.DiskCache;
+import com.wenhui.syncedListView.core.ImageHeaderProbe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.HashSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads image dimensions ahead of binding, so an adapter can give a row its final height on the
+ * first layout instead of resizing it when the image arrives. Probing reads only the image header
+ * on a background thread, typically started from {@link PrefetchAdapter#onPrefetch(int)}, and
+ * stores the result in a {@link DimensionCache}. Main thread only.
+ */
+public class ImageDimensionProbe {
+
+    private static final String TAG = "ImageDimensionProbe";
+    private static final long KEEP_ALIVE_SECONDS = 5L;
+
+    public interface OnDimensionsListener {
+        /**
+         * Called on the main thread when a probe finds the dimensions.
+         */
+        void onDimensions(String key, int width, int height);
+    }
+
+    private final ImageSource mSource;
+    private final DimensionCache mCache;
+    private final ThreadPoolExecutor mExecutor;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final HashSet<String> mInFlight = new HashSet<String>();
+    private DiskCache mDiskCache;
+    private OnDimensionsListener mListener;
+    private boolean mShutdown = false;
+
+    public ImageDimensionProbe(ImageSource source, DimensionCache cache) {
+        mSource = source;
+        mCache = cache;
+        mExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), sThreadFactory);
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Probe the encoded images already on disk before opening the {@link ImageSource}.
+     */
+    public void setDiskCache(DiskCache diskCache) {
+        mDiskCache = diskCache;
+    }
+
+    public void setOnDimensionsListener(OnDimensionsListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * @return Packed dimensions, see {@link ImageHeaderProbe#getWidth(long)}, or
+     * {@link ImageHeaderProbe#UNKNOWN} if not probed yet
+     */
+    public long get(String key) {
+        return mCache.get(key);
+    }
+
+    /**
+     * Probe the image in the background unless its dimensions are known or already being probed.
+     * Ignored after {@link #shutdown()}, a prefetch frame may still ask while the owner goes away.
+     */
+    public void probe(String key) {
+        if( mShutdown ){ return; }
+        if( mCache.get(key) != ImageHeaderProbe.UNKNOWN || !mInFlight.add(key) ){ return; }
+        mExecutor.execute(new ProbeRunnable(key));
+    }
+
+    public void shutdown() {
+        mShutdown = true;
+        mExecutor.shutdownNow();
+        mInFlight.clear();
+    }
+
+    private long probeInBackground(String key) throws IOException {
+        final DiskCache diskCache = mDiskCache;
+        final ReadableByteChannel cached = diskCache == null ? null : diskCache.openValue(key);
+        if( cached != null ){
+            try{
+                // Only the header is read from the data file
+                return ImageHeaderProbe.probe(cached);
+            }finally {
+                cached.close();
+            }
+        }
+
+        InputStream in = mSource.open(key);
+        try{
+            return ImageHeaderProbe.probe(Channels.newChannel(in));
+        }finally {
+            // Closing early stops the download past the header
+            in.close();
+        }
+    }
+
+    private class ProbeRunnable implements Runnable {
+
+        private final String key;
+
+        ProbeRunnable(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            long dimensions = ImageHeaderProbe.UNKNOWN;
+            try{
+                dimensions = probeInBackground(key);
+            }catch (IOException e){
+                Log.w(TAG, "Cannot probe " + key, e);
+            }
+            if( dimensions != ImageHeaderProbe.UNKNOWN ){
+                mCache.put(key, ImageHeaderProbe.getWidth(dimensions), ImageHeaderProbe.getHeight(dimensions));
+            }
+
+            final long result = dimensions;
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mInFlight.remove(key);
+                    if( mShutdown ){ return; }
+                    if( result != ImageHeaderProbe.UNKNOWN && mListener != null ){
+                        mListener.onDimensions(key, ImageHeaderProbe.getWidth(result), ImageHeaderProbe.getHeight(result));
+                    }
+                }
+            });
+        }
+    }
+
+    private static final ThreadFactory sThreadFactory = new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, TAG);
+        }
+    };
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Where an {@link ImageColumnBinder} reads encoded images from.
+ */
+public interface ImageSource {
+
+    /**
+     * Called on a worker thread, the stream is closed by the caller.
+     */
+    InputStream open(String key) throws IOException;
+
+}
@@ -20,18 +20,21 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
 
+import com.wenhui.syncedListView.core.ScrollMetrics;
+import com.wenhui.syncedListView.core.WrappedPositions;
+
 public abstract class InfiniteListAdapter extends BaseAdapter {
 
+	/** Set by the synced layout while its metrics are on */
+	ScrollMetrics.Column mColumnMetrics;
+
 	public abstract int getItemCount();
 	public abstract Object getItemAt(int position);
 	public abstract View getItemView(int position, View convertView, ViewGroup parent);
 	
 	@Override
 	final public int getCount() {
-        if( getItemCount() <= 0 ) {
-            return 0;
-        }
-		return Integer.MAX_VALUE;
+		return WrappedPositions.getWrappedCount(getItemCount());
 	}
 
 	@Override
@@ -48,12 +51,14 @@ public abstract class InfiniteListAdapter extends BaseAdapter {
 	@Override
 	final public View getView(int position, View convertView, ViewGroup parent) {
 		int newPosition = getRealItemPosition(position);
+		if( mColumnMetrics != null ){
+			mColumnMetrics.recordGetView(convertView != null);
+		}
 		return getItemView(newPosition, convertView, parent);
 	}
 	
 	private int getRealItemPosition(int position){
-		if( getItemCount() == 0 ){ return 0; }
-		return position % getItemCount();
+		return WrappedPositions.getRealPosition(position, getItemCount());
 	}
 
 }
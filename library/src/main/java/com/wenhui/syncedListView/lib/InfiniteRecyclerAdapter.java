@@ -0,0 +1,112 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.support.v7.widget.RecyclerView;
+
+import com.wenhui.syncedListView.core.WrappedPositions;
+
+import java.util.ArrayList;
+
+/**
+ * {@link RecyclerView} counterpart of {@link InfiniteListAdapter}, the items wrap around endlessly.
+ * Positions handed to the abstract methods are already wrapped into [0, getRealItemCount()).
+ * <p>
+ * A RecyclerView the adapter is set on starts at the middle of the wrapped range, like the columns
+ * of a {@link VirtualSyncedListLayout}, so it can scroll a long way in both directions. Set its
+ * layout manager first. A view attached while the adapter has no items starts there once items arrive.
+ */
+public abstract class InfiniteRecyclerAdapter<VH extends RecyclerView.ViewHolder> extends RecyclerView.Adapter<VH> {
+
+    /** Attached views still waiting for items to start at the middle */
+    private final ArrayList<RecyclerView> mPendingStart = new ArrayList<RecyclerView>();
+
+    private final RecyclerView.AdapterDataObserver mStartObserver = new RecyclerView.AdapterDataObserver() {
+        @Override
+        public void onChanged() {
+            startPendingViews();
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            startPendingViews();
+        }
+    };
+
+    public InfiniteRecyclerAdapter() {
+        registerAdapterDataObserver(mStartObserver);
+    }
+
+    public abstract int getRealItemCount();
+    public abstract void onBindItemViewHolder(VH holder, int position);
+
+    /**
+     * The columns of a {@link SyncedRecyclerLayout} share their recycled holders by view type, so
+     * an adapter whose holders other columns cannot bind returns types of its own here.
+     */
+    public int getItemViewTypeAt(int position) {
+        return 0;
+    }
+
+    @Override
+    final public int getItemCount() {
+        return WrappedPositions.getWrappedCount(getRealItemCount());
+    }
+
+    @Override
+    final public int getItemViewType(int position) {
+        return getItemViewTypeAt(getRealItemPosition(position));
+    }
+
+    @Override
+    final public void onBindViewHolder(VH holder, int position) {
+        onBindItemViewHolder(holder, getRealItemPosition(position));
+    }
+
+    public int getRealItemPosition(int position){
+        return WrappedPositions.getRealPosition(position, getRealItemCount());
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        if( getRealItemCount() > 0 ){
+            startAtMiddle(recyclerView);
+        } else if( !mPendingStart.contains(recyclerView) ){
+            mPendingStart.add(recyclerView);
+        }
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        mPendingStart.remove(recyclerView);
+    }
+
+    private void startPendingViews() {
+        if( mPendingStart.isEmpty() || getRealItemCount() <= 0 ){ return; }
+        for( int i=0, size=mPendingStart.size(); i<size; i++ ){
+            startAtMiddle(mPendingStart.get(i));
+        }
+        mPendingStart.clear();
+    }
+
+    private void startAtMiddle(RecyclerView recyclerView) {
+        recyclerView.scrollToPosition(WrappedPositions.getMiddlePosition(getRealItemCount()));
+    }
+
+}
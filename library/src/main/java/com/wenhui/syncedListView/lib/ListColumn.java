@@ -0,0 +1,213 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.View;
+import android.widget.ListAdapter;
+import android.widget.ListView;
+
+import com.wenhui.syncedListView.core.ItemHeightIndex;
+import com.wenhui.syncedListView.core.ScrollMetrics;
+
+final class ListColumn extends SyncedColumn {
+
+    final ListView listView;
+    private ItemHeightIndex heightIndex;
+
+    /** First row, its top and the rows shown at the last {@link #getScrolledDistance()} */
+    private int trackedPosition = ListView.INVALID_POSITION;
+    private int trackedTop;
+    private int trackedCount;
+    private long scrolledDistance;
+    private boolean estimatedDistance = false;
+
+    ListColumn(ListView listView, float scrollFactor, float animationFactor) {
+        super(listView, scrollFactor, animationFactor);
+        this.listView = listView;
+    }
+
+    @Override
+    void scrollColumnBy(int deltaY) {
+        ListScrollHelper.scrollListBy(listView, deltaY);
+        recordRowHeights();
+    }
+
+    @Override
+    public long getScrollOffset() {
+        recordRowHeights();
+        ItemHeightIndex index = heightIndex;
+        if( index == null || listView.getChildCount() == 0 ){ return -1; }
+        return index.offsetOf(listView.getFirstVisiblePosition())
+                + listView.getPaddingTop() - listView.getChildAt(0).getTop();
+    }
+
+    /**
+     * Summed from the first row's moves. Rows passed in between are measured as long as they were
+     * on screen at the previous call. A fast fling can skip whole rows between two calls, their
+     * estimated heights then enter the sum, see {@link #takeEstimatedDistance()}.
+     */
+    @Override
+    long getScrolledDistance() {
+        recordRowHeights();
+        ItemHeightIndex index = heightIndex;
+        if( index == null || listView.getChildCount() == 0 ){ return scrolledDistance; }
+        final int position = listView.getFirstVisiblePosition();
+        final int top = listView.getChildAt(0).getTop();
+        if( trackedPosition != ListView.INVALID_POSITION ){
+            scrolledDistance += index.offsetOf(position) - index.offsetOf(trackedPosition) + trackedTop - top;
+            if( Math.abs(position - trackedPosition) > trackedCount ){
+                estimatedDistance = true;
+            }
+        }
+        trackedPosition = position;
+        trackedTop = top;
+        trackedCount = listView.getChildCount();
+        return scrolledDistance;
+    }
+
+    @Override
+    boolean takeEstimatedDistance() {
+        final boolean estimated = estimatedDistance;
+        estimatedDistance = false;
+        return estimated;
+    }
+
+    /**
+     * ListView only takes a fling from Lollipop on.
+     */
+    @Override
+    boolean flingNatively(int velocity) {
+        if( Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP ){ return false; }
+        flingLollipop(velocity);
+        return true;
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void flingLollipop(int velocity){
+        // The list takes the finger's velocity, positive moves the content down
+        listView.fling(-velocity);
+    }
+
+    /**
+     * A zero smooth scroll ends the list's fling.
+     */
+    @Override
+    void stopNativeFling() {
+        listView.smoothScrollBy(0, 0);
+    }
+
+    @Override
+    public long getMaxScrollOffset() {
+        ItemHeightIndex index = ensureHeightIndex();
+        if( index == null || index.isWrapping() ){ return UNBOUNDED; }
+        int viewport = listView.getHeight() - listView.getPaddingTop() - listView.getPaddingBottom();
+        return Math.max(0, index.getTotalHeight() - viewport);
+    }
+
+    @Override
+    boolean scrollToOffset(long offset) {
+        ItemHeightIndex index = ensureHeightIndex();
+        if( index == null ){ return false; }
+        long position = Math.min(index.positionAt(offset), listView.getAdapter().getCount() - 1);
+        listView.setSelectionFromTop((int) position, (int) (index.offsetOf(position) - offset));
+        return true;
+    }
+
+    /**
+     * Only an {@link InfiniteListAdapter} can tell, the list calls getView() itself.
+     */
+    @Override
+    public void attachMetrics(ScrollMetrics.Column metrics) {
+        ListAdapter adapter = listView.getAdapter();
+        if( adapter instanceof InfiniteListAdapter ){
+            ((InfiniteListAdapter) adapter).mColumnMetrics = metrics;
+        }
+    }
+
+    @Override
+    public ItemHeightIndex getHeightIndex() {
+        return ensureHeightIndex();
+    }
+
+    @Override
+    PrefetchAdapter getPrefetchAdapter() {
+        ListAdapter adapter = listView.getAdapter();
+        return adapter instanceof PrefetchAdapter ? (PrefetchAdapter) adapter : null;
+    }
+
+    private ItemHeightIndex ensureHeightIndex(){
+        ListAdapter adapter = listView.getAdapter();
+        if( adapter == null ){ return null; }
+        final boolean wrap = adapter instanceof InfiniteListAdapter;
+        final int count = wrap ? ((InfiniteListAdapter) adapter).getItemCount() : adapter.getCount();
+        if( count <= 0 ){ return null; }
+        if( heightIndex == null || heightIndex.getItemCount() != count || heightIndex.isWrapping() != wrap ){
+            int estimate = listView.getChildCount() > 0 ? listView.getChildAt(0).getHeight() : listView.getHeight();
+            heightIndex = new ItemHeightIndex(count, wrap, estimate);
+        }
+        return heightIndex;
+    }
+
+    /**
+     * Feed the heights of the attached rows into the index, unchanged rows cost a lookup each.
+     */
+    private void recordRowHeights(){
+        final int childCount = listView.getChildCount();
+        if( childCount == 0 ){ return; }
+        ItemHeightIndex index = ensureHeightIndex();
+        if( index == null ){ return; }
+        final int firstPosition = listView.getFirstVisiblePosition();
+        final int divider = listView.getDividerHeight();
+        for( int i=0; i<childCount; i++ ){
+            index.setHeight(firstPosition + i, listView.getChildAt(i).getHeight() + divider);
+        }
+    }
+
+    /**
+     * Rows are translated rather than the list, so its edges stay in place. The list may have
+     * recycled or added rows since the last frame, so every row is checked.
+     */
+    @Override
+    public void setTranslationOffset(float offset) {
+        translationOffset = offset;
+        final float translationY = -offset;
+        for( int i=0, count=listView.getChildCount(); i<count; i++ ){
+            View child = listView.getChildAt(i);
+            if( child.getTranslationY() != translationY ){
+                child.setTranslationY(translationY);
+            }
+        }
+    }
+
+    /**
+     * Dividers are drawn at the laid out row bounds and would not follow a translation, so a list
+     * with dividers only translates the sub-pixel remainder.
+     */
+    @Override
+    public boolean canTranslateBy(double offset) {
+        if( Math.abs(offset) <= 0.5 ){ return true; }
+        if( listView.getDivider() != null && listView.getDividerHeight() > 0 ){ return false; }
+
+        final int childCount = listView.getChildCount();
+        if( childCount == 0 ){ return false; }
+        return RowTranslation.canTranslateBy(listView.getChildAt(0), listView.getChildAt(childCount - 1),
+                listView.getPaddingTop(), listView.getHeight() - listView.getPaddingBottom(), offset);
+    }
+
+}
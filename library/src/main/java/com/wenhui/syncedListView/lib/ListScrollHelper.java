@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.View;
+import android.widget.ListView;
+
+/**
+ * Scrolls a {@link ListView} without a full layout pass whenever possible.
+ * <p>
+ * From KitKat the list scrolls itself through {@link ListView#scrollListBy(int)}, which offsets the
+ * attached children and only fills or recycles the rows crossing the edges. Before that, children
+ * are offset in place as long as no row enters or leaves the viewport, and only the frames where a
+ * row crosses an edge fall back to {@link ListView#setSelectionFromTop(int, int)}.
+ */
+final class ListScrollHelper {
+
+    private ListScrollHelper(){}
+
+    /**
+     * @param deltaY  Positive moves the content up
+     */
+    static void scrollListBy(ListView target, int deltaY){
+        if( deltaY == 0 ){ return; }
+
+        if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT ){
+            scrollListByKitKat(target, deltaY);
+            return;
+        }
+
+        if( offsetChildren(target, deltaY) ){
+            return;
+        }
+
+        relayoutBy(target, deltaY);
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static void scrollListByKitKat(ListView target, int deltaY){
+        target.scrollListBy(deltaY);
+    }
+
+    /**
+     * Shift the attached children when the same rows stay on screen.
+     *
+     * @return false if a row would enter or leave the viewport, the list needs a layout then
+     */
+    private static boolean offsetChildren(ListView target, int deltaY){
+        final int childCount = target.getChildCount();
+        if( childCount == 0 ){ return false; }
+
+        final View first = target.getChildAt(0);
+        final View last = target.getChildAt(childCount - 1);
+        final int top = target.getPaddingTop();
+        final int bottom = target.getHeight() - target.getPaddingBottom();
+
+        if( first.getTop() - deltaY > top || first.getBottom() - deltaY <= top ){
+            return false;
+        }
+        if( last.getBottom() - deltaY < bottom || last.getTop() - deltaY >= bottom ){
+            return false;
+        }
+
+        for( int i=0; i<childCount; i++ ){
+            target.getChildAt(i).offsetTopAndBottom(-deltaY);
+        }
+        target.invalidate();
+        return true;
+    }
+
+    private static void relayoutBy(ListView target, int deltaY){
+        final int firstPosition = target.getFirstVisiblePosition();
+        if (firstPosition == ListView.INVALID_POSITION) {
+            return;
+        }
+
+        final View firstView = target.getChildAt(0);
+        if( firstView == null ){ return; }
+
+        final int newTop = firstView.getTop() - deltaY;
+        target.setSelectionFromTop(firstPosition, newTop);
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+/**
+ * Lowers the auto scroll rate with battery saver on, when the device runs hot and when the battery
+ * is low and not charging. The lowest applicable rate wins.
+ */
+public class PowerAwareAutoScrollPolicy implements AutoScrollPolicy {
+
+    private static final int DEFAULT_POWER_SAVE_RATE = 30;
+    private static final int DEFAULT_THROTTLED_RATE = 20;
+    private static final int DEFAULT_LOW_BATTERY_RATE = 15;
+    private static final int DEFAULT_LOW_BATTERY_LEVEL = 15;
+    private static final int DEFAULT_HOT_TEMPERATURE = 420;  // 42 degrees
+
+    private final int mPowerSaveRate;
+    private final int mThrottledRate;
+    private final int mLowBatteryRate;
+    private int mLowBatteryLevel = DEFAULT_LOW_BATTERY_LEVEL;
+    private int mHotTemperature = DEFAULT_HOT_TEMPERATURE;
+
+    public PowerAwareAutoScrollPolicy() {
+        this(DEFAULT_POWER_SAVE_RATE, DEFAULT_THROTTLED_RATE, DEFAULT_LOW_BATTERY_RATE);
+    }
+
+    /**
+     * @param powerSaveRate  Updates per second with battery saver on
+     * @param throttledRate  Updates per second when thermally throttled or hot
+     * @param lowBatteryRate  Updates per second on low battery, {@link #RATE_PAUSED} to stop
+     */
+    public PowerAwareAutoScrollPolicy(int powerSaveRate, int throttledRate, int lowBatteryRate) {
+        mPowerSaveRate = powerSaveRate;
+        mThrottledRate = throttledRate;
+        mLowBatteryRate = lowBatteryRate;
+    }
+
+    /**
+     * @param percent  Battery level at and below which the low battery rate applies
+     */
+    public void setLowBatteryLevel(int percent) {
+        mLowBatteryLevel = percent;
+    }
+
+    /**
+     * @param tenthsOfDegree  Battery temperature at and above which the device counts as throttled
+     */
+    public void setHotTemperature(int tenthsOfDegree) {
+        mHotTemperature = tenthsOfDegree;
+    }
+
+    @Override
+    public int getUpdateRate(PowerState state) {
+        int rate = RATE_DISPLAY;
+        if( state.isPowerSaveMode() ){
+            rate = Math.min(rate, mPowerSaveRate);
+        }
+        if( state.isThermalThrottled() || state.getBatteryTemperature() >= mHotTemperature ){
+            rate = Math.min(rate, mThrottledRate);
+        }
+        if( !state.isCharging() && state.getBatteryLevel() != PowerState.UNKNOWN
+                && state.getBatteryLevel() <= mLowBatteryLevel ){
+            rate = Math.min(rate, mLowBatteryRate);
+        }
+        return rate;
+    }
+
+}
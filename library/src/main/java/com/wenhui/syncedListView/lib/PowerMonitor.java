@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+
+/**
+ * Keeps a {@link PowerState} up to date from the battery and battery saver broadcasts while
+ * started.
+ */
+final class PowerMonitor extends BroadcastReceiver {
+
+    interface Listener {
+        void onPowerStateChanged(PowerState state);
+    }
+
+    private final Context mContext;
+    private final PowerState mState;
+    private final Listener mListener;
+    private boolean mStarted = false;
+
+    PowerMonitor(Context context, PowerState state, Listener listener) {
+        mContext = context.getApplicationContext();
+        mState = state;
+        mListener = listener;
+    }
+
+    void start() {
+        if( mStarted ){ return; }
+        mStarted = true;
+
+        IntentFilter filter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+        if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ){
+            filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        }
+        // The battery broadcast is sticky, so the state is complete right away
+        Intent battery = mContext.registerReceiver(this, filter);
+        if( battery != null ){
+            readBattery(battery);
+        }
+        readPowerSaveMode();
+        mListener.onPowerStateChanged(mState);
+    }
+
+    void stop() {
+        if( !mStarted ){ return; }
+        mStarted = false;
+        mContext.unregisterReceiver(this);
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if( Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction()) ){
+            readBattery(intent);
+        } else {
+            readPowerSaveMode();
+        }
+        mListener.onPowerStateChanged(mState);
+    }
+
+    private void readBattery(Intent battery) {
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        mState.setBatteryLevel(level >= 0 && scale > 0 ? level * 100 / scale : PowerState.UNKNOWN);
+        mState.setBatteryTemperature(battery.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, PowerState.UNKNOWN));
+        mState.setCharging(battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void readPowerSaveMode() {
+        if( Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP ){ return; }
+        PowerManager pm = (PowerManager) mContext.getSystemService(Context.POWER_SERVICE);
+        mState.setPowerSaveMode(pm.isPowerSaveMode());
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+/**
+ * Snapshot of the device state an {@link AutoScrollPolicy} decides on.
+ */
+public final class PowerState {
+
+    public static final int UNKNOWN = -1;
+
+    private boolean mPowerSaveMode = false;
+    private int mBatteryLevel = UNKNOWN;
+    private int mBatteryTemperature = UNKNOWN;
+    private boolean mCharging = false;
+    private boolean mThermalThrottled = false;
+
+    PowerState() {
+    }
+
+    /**
+     * @return true while battery saver is on, always false before Lollipop
+     */
+    public boolean isPowerSaveMode() {
+        return mPowerSaveMode;
+    }
+
+    void setPowerSaveMode(boolean powerSaveMode) {
+        mPowerSaveMode = powerSaveMode;
+    }
+
+    /**
+     * @return Battery charge in percent, or {@link #UNKNOWN}
+     */
+    public int getBatteryLevel() {
+        return mBatteryLevel;
+    }
+
+    void setBatteryLevel(int batteryLevel) {
+        mBatteryLevel = batteryLevel;
+    }
+
+    /**
+     * @return Battery temperature in tenths of a degree Celsius, or {@link #UNKNOWN}
+     */
+    public int getBatteryTemperature() {
+        return mBatteryTemperature;
+    }
+
+    void setBatteryTemperature(int batteryTemperature) {
+        mBatteryTemperature = batteryTemperature;
+    }
+
+    /**
+     * @return true while plugged in
+     */
+    public boolean isCharging() {
+        return mCharging;
+    }
+
+    void setCharging(boolean charging) {
+        mCharging = charging;
+    }
+
+    /**
+     * @return What the app last reported through setThermalThrottled() on the layout, the
+     * platform has no thermal status API at this SDK level
+     */
+    public boolean isThermalThrottled() {
+        return mThermalThrottled;
+    }
+
+    void setThermalThrottled(boolean thermalThrottled) {
+        mThermalThrottled = thermalThrottled;
+    }
+
+}
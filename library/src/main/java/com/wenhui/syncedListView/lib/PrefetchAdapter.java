@@ -0,0 +1,34 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+/**
+ * Implemented by a column adapter that wants to hear about rows before they scroll into view, so
+ * it can start loading their data and images. During auto scroll the layout knows where every
+ * column will be, and calls this for each row expected within the prefetch horizon, once per row
+ * along a trajectory.
+ */
+public interface PrefetchAdapter {
+
+    /**
+     * Called on the main thread, should only start work elsewhere.
+     *
+     * @param position  Real item position, already wrapped for an {@link InfiniteListAdapter}
+     */
+    void onPrefetch(int position);
+
+}
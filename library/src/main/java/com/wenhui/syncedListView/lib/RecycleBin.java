@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.util.SparseArray;
+import android.view.View;
+
+import java.util.ArrayList;
+
+/**
+ * Scrap views shared by every column of a {@link VirtualSyncedListLayout}, keyed by adapter slot and
+ * view type so a view is only handed back to the adapter that created it.
+ */
+final class RecycleBin {
+
+    /** View types an adapter may report, the key space of each adapter slot */
+    static final int MAX_VIEW_TYPES = 256;
+
+    private final SparseArray<ArrayList<View>> mScrapViews = new SparseArray<ArrayList<View>>();
+
+    static int scrapKey(int adapterSlot, int viewType){
+        return adapterSlot * MAX_VIEW_TYPES + viewType;
+    }
+
+    View getScrapView(int key){
+        ArrayList<View> scrap = mScrapViews.get(key);
+        if( scrap == null || scrap.isEmpty() ){
+            return null;
+        }
+        return scrap.remove(scrap.size() - 1);
+    }
+
+    void addScrapView(int key, View view){
+        ArrayList<View> scrap = mScrapViews.get(key);
+        if( scrap == null ){
+            scrap = new ArrayList<View>();
+            mScrapViews.put(key, scrap);
+        }
+        scrap.add(view);
+    }
+
+    void clear(){
+        mScrapViews.clear();
+    }
+
+}
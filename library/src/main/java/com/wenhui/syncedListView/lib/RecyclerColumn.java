@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.support.v7.widget.RecyclerView;
+
+final class RecyclerColumn extends SyncedColumn {
+
+    final RecyclerView recyclerView;
+    private long scrolledDistance;
+
+    private final RecyclerView.OnScrollListener scrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+            scrolledDistance += dy;
+        }
+    };
+
+    RecyclerColumn(RecyclerView recyclerView, float scrollFactor, float animationFactor) {
+        super(recyclerView, scrollFactor, animationFactor);
+        this.recyclerView = recyclerView;
+        recyclerView.addOnScrollListener(scrollListener);
+    }
+
+    @Override
+    void release() {
+        super.release();
+        recyclerView.removeOnScrollListener(scrollListener);
+    }
+
+    /**
+     * Goes through the layout manager's scrollVerticallyBy(), which offsets the attached children
+     * and only binds or recycles the rows crossing the edges.
+     */
+    @Override
+    void scrollColumnBy(int deltaY) {
+        recyclerView.scrollBy(0, deltaY);
+    }
+
+    /**
+     * @return false below the view's minimum fling velocity
+     */
+    @Override
+    boolean flingNatively(int velocity) {
+        return recyclerView.fling(0, velocity);
+    }
+
+    @Override
+    void stopNativeFling() {
+        recyclerView.stopScroll();
+    }
+
+    /**
+     * Summed from the view's scroll callbacks, the layout manager's own offset is an estimate.
+     */
+    @Override
+    long getScrolledDistance() {
+        return scrolledDistance;
+    }
+
+}
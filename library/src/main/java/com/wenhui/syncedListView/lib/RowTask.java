@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.view.View;
+
+/**
+ * Work for one row, submitted to a {@link RowTaskScheduler}. The background part runs on a worker
+ * thread, the result is handed back on the main thread unless the row was recycled or bound to
+ * another task in the meantime.
+ *
+ * @param <R> Result type
+ */
+public abstract class RowTask<R> {
+
+    View mRow;
+    int mPosition;
+    // Guarded by the scheduler's lock: rank against the viewport, place in its two heaps
+    int mRank;
+    int mNearIndex = -1, mFarIndex = -1;
+    volatile boolean mCancelled = false;
+    private R mResult;
+
+    /**
+     * @return Adapter position the task was submitted for
+     */
+    public final int getPosition() {
+        return mPosition;
+    }
+
+    /**
+     * Long running work can check this and give up early.
+     */
+    public final boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Runs on a worker thread.
+     */
+    protected abstract R doInBackground();
+
+    /**
+     * Runs on the main thread, with the results of the other tasks finished within the same frame.
+     *
+     * @param row  The row view the task was submitted for, still showing its position
+     */
+    protected abstract void onResult(View row, R result);
+
+    /**
+     * Runs on the main thread for a task that finished after its row was recycled or bound again,
+     * the result may still be worth keeping.
+     */
+    protected void onDiscarded(R result) {
+    }
+
+    final void execute() {
+        if( !mCancelled ){
+            mResult = doInBackground();
+        }
+    }
+
+    final void deliver() {
+        if( !mCancelled ){
+            onResult(mRow, mResult);
+        }
+        mResult = null;
+    }
+
+    final void discard() {
+        if( mResult != null ){
+            onDiscarded(mResult);
+        }
+        mResult = null;
+    }
+
+}
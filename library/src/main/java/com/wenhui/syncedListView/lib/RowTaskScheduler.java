@@ -0,0 +1,493 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.view.View;
+import android.widget.AbsListView;
+import android.widget.Adapter;
+import android.widget.WrapperListAdapter;
+
+import com.wenhui.syncedListView.core.WrappedPositions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs per-row work for a column's adapter on a few background threads. A free worker always takes
+ * the pending task nearest to the viewport, rows ahead in the scroll direction before rows left
+ * behind. A row's task is cancelled when the row is recycled or bound again, and results are
+ * handed back on the main thread together, once per frame.
+ * <p>
+ * Built on an {@link AbsListView} it follows the list's viewport and recycling by itself. For
+ * other columns report both through {@link #setViewport(int, int)} and
+ * {@link #onMovedToScrapHeap(View)}, see
+ * {@link VirtualSyncedListLayout#setRecyclerListener(AbsListView.RecyclerListener)}.
+ * <p>
+ * Rows of an {@link InfiniteListAdapter} may be submitted with their real position, as
+ * getItemView() receives it, or their adapter position: either is ranked by its wrapped distance
+ * to the viewport.
+ * <p>
+ * Pending tasks sit in two heaps on their rank, nearest and furthest first, which are re-keyed
+ * when the viewport moves; a row view holds its task in a tag. Picking, dropping and cancelling a
+ * task take logarithmic time and allocate nothing.
+ */
+public class RowTaskScheduler implements AbsListView.RecyclerListener {
+
+    private static final int DEFAULT_MAX_PENDING = 64;
+    private static final long KEEP_ALIVE_SECONDS = 5L;
+
+    /** Rows behind the viewport rank after every row ahead of it */
+    private static final int BEHIND_PENALTY = Integer.MAX_VALUE / 2;
+
+    private final ThreadPoolExecutor mExecutor;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final FrameTicker mFrameTicker;
+    private final AbsListView mList;
+
+    private final Object mLock = new Object();
+    // Guarded by mLock
+    private final TaskHeap mNearest = new TaskHeap(true);
+    private final TaskHeap mFurthest = new TaskHeap(false);
+    private final ArrayList<RowTask<?>> mRunning = new ArrayList<RowTask<?>>();
+    private final ArrayList<RowTask<?>> mFinished = new ArrayList<RowTask<?>>();
+    private int mFirstVisible = 0, mLastVisible = -1, mDirection = 1;
+    /** Real item count of a wrapping adapter, 0 if the positions do not wrap */
+    private int mWrappedItemCount = 0;
+    private int mMaxPending = DEFAULT_MAX_PENDING;
+    private boolean mFramePosted = false;
+
+    // Main thread only
+    private final ArrayList<RowTask<?>> mDelivering = new ArrayList<RowTask<?>>();
+    private boolean mShutdown = false;
+
+    /**
+     * @param column  The column the rows belong to, results are delivered on its frames
+     * @param threads  Worker threads, usually 2
+     */
+    public RowTaskScheduler(View column, int threads) {
+        if( threads <= 0 ){
+            throw new IllegalArgumentException("At least one thread is needed");
+        }
+        mExecutor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), sThreadFactory);
+        mExecutor.allowCoreThreadTimeOut(true);
+        mFrameTicker = FrameTicker.create(column, mFrameCallback);
+
+        if( column instanceof AbsListView ){
+            mList = (AbsListView) column;
+            mList.setRecyclerListener(this);
+        } else {
+            mList = null;
+        }
+    }
+
+    /**
+     * Pending tasks beyond this are dropped, the furthest from the viewport first.
+     */
+    public void setMaxPending(int maxPending) {
+        synchronized( mLock ){
+            mMaxPending = maxPending;
+        }
+    }
+
+    /**
+     * Run a task for a row, cancelling whatever the row view had pending. After
+     * {@link #shutdown()} the task is dropped, a list may still bind rows while it is torn down.
+     * Main thread only.
+     *
+     * @param row  The row view, usually the view returned from getView()
+     * @param position  Adapter position the row is bound to, or the real position of a wrapping
+     *                  adapter's row
+     */
+    public void submit(View row, int position, RowTask<?> task) {
+        cancel(row);
+        if( mShutdown ){
+            task.mCancelled = true;
+            return;
+        }
+        updateViewport();
+
+        task.mRow = row;
+        task.mPosition = position;
+        task.mCancelled = false;
+        row.setTag(R.id.synced_row_task, task);
+
+        RowTask<?> dropped = null;
+        synchronized( mLock ){
+            task.mRank = distanceLocked(position);
+            mNearest.add(task);
+            mFurthest.add(task);
+            if( mNearest.size() > mMaxPending ){
+                dropped = mFurthest.poll();
+                mNearest.remove(dropped);
+            }
+        }
+        if( dropped != null ){
+            cancelTask(dropped);
+        }
+        // Each run takes the best task at that time, not necessarily this one
+        mExecutor.execute(mRunNext);
+    }
+
+    /**
+     * Cancel the task of a row view, its result will not be delivered. Main thread only.
+     */
+    public void cancel(View row) {
+        final Object tag = row.getTag(R.id.synced_row_task);
+        if( !(tag instanceof RowTask) ){ return; }
+        final RowTask<?> task = (RowTask<?>) tag;
+        cancelTask(task);
+        synchronized( mLock ){
+            mNearest.remove(task);
+            mFurthest.remove(task);
+        }
+    }
+
+    /**
+     * Cancel every task, results still running are dropped. Main thread only.
+     */
+    public void cancelAll() {
+        synchronized( mLock ){
+            for( int i=0, size=mNearest.size(); i<size; i++ ){
+                cancelTask(mNearest.get(i));
+            }
+            for( int i=0, size=mRunning.size(); i<size; i++ ){
+                cancelTask(mRunning.get(i));
+            }
+            for( int i=0, size=mFinished.size(); i<size; i++ ){
+                cancelTask(mFinished.get(i));
+            }
+            mNearest.clear();
+            mFurthest.clear();
+        }
+    }
+
+    /**
+     * Unlink the task from its row, its result is discarded. Main thread only.
+     */
+    private static void cancelTask(RowTask<?> task) {
+        task.mCancelled = true;
+        if( task.mRow.getTag(R.id.synced_row_task) == task ){
+            task.mRow.setTag(R.id.synced_row_task, null);
+        }
+    }
+
+    /**
+     * Cancel every task and stop the workers, tasks submitted afterwards are dropped.
+     */
+    public void shutdown() {
+        mShutdown = true;
+        cancelAll();
+        mFrameTicker.cancel();
+        mExecutor.shutdownNow();
+        if( mList != null ){
+            mList.setRecyclerListener(null);
+        }
+    }
+
+    /**
+     * Report the visible adapter positions, only needed for columns other than an AbsListView.
+     * The scroll direction is taken from how the viewport moves.
+     */
+    public void setViewport(int firstVisible, int lastVisible) {
+        synchronized( mLock ){
+            if( firstVisible == mFirstVisible && lastVisible == mLastVisible ){ return; }
+            if( firstVisible != mFirstVisible ){
+                mDirection = firstVisible > mFirstVisible ? 1 : -1;
+            }
+            mFirstVisible = firstVisible;
+            mLastVisible = lastVisible;
+            rekeyLocked();
+        }
+    }
+
+    /**
+     * Report the real item count of a wrapping adapter, only needed for columns other than an
+     * AbsListView.
+     *
+     * @param itemCount  {@link InfiniteListAdapter#getItemCount()}, 0 if the positions do not wrap
+     */
+    public void setWrappedItemCount(int itemCount) {
+        itemCount = Math.max(0, itemCount);
+        synchronized( mLock ){
+            if( itemCount == mWrappedItemCount ){ return; }
+            mWrappedItemCount = itemCount;
+            rekeyLocked();
+        }
+    }
+
+    @Override
+    public void onMovedToScrapHeap(View view) {
+        cancel(view);
+    }
+
+    private void updateViewport() {
+        if( mList == null ){ return; }
+        Adapter adapter = mList.getAdapter();
+        while( adapter instanceof WrapperListAdapter ){
+            adapter = ((WrapperListAdapter) adapter).getWrappedAdapter();
+        }
+        setWrappedItemCount(adapter instanceof InfiniteListAdapter
+                ? ((InfiniteListAdapter) adapter).getItemCount() : 0);
+        setViewport(mList.getFirstVisiblePosition(), mList.getLastVisiblePosition());
+    }
+
+    /**
+     * @return Rank of a position, lower runs first
+     */
+    private int distanceLocked(int position) {
+        final int itemCount = mWrappedItemCount;
+        if( itemCount > 0 ){
+            return wrappedDistanceLocked(WrappedPositions.getRealPosition(position, itemCount), itemCount);
+        }
+        if( position >= mFirstVisible && position <= mLastVisible ){ return 0; }
+        boolean below = position > mLastVisible;
+        int distance = below ? position - mLastVisible : mFirstVisible - position;
+        return rankLocked(below, distance);
+    }
+
+    /**
+     * A real position repeats every item count, it is ranked by its nearest copy.
+     */
+    private int wrappedDistanceLocked(int realPosition, int itemCount) {
+        final int first = WrappedPositions.getRealPosition(mFirstVisible, itemCount);
+        final int span = Math.max(0, mLastVisible - mFirstVisible);
+        // Rows from the first visible one down, wrapping around
+        final int offset = (realPosition - first + itemCount) % itemCount;
+        if( offset <= span ){ return 0; }
+        final int belowDistance = offset - span;
+        final int aboveDistance = itemCount - offset;
+        final boolean below = belowDistance <= aboveDistance;
+        return rankLocked(below, below ? belowDistance : aboveDistance);
+    }
+
+    private int rankLocked(boolean below, int distance) {
+        boolean ahead = below == (mDirection > 0);
+        return ahead ? distance : BEHIND_PENALTY + distance;
+    }
+
+    /**
+     * Rank every pending task against the moved viewport and restore both heaps.
+     */
+    private void rekeyLocked() {
+        for( int i=0, size=mNearest.size(); i<size; i++ ){
+            RowTask<?> task = mNearest.get(i);
+            task.mRank = distanceLocked(task.mPosition);
+        }
+        mNearest.heapify();
+        mFurthest.heapify();
+    }
+
+    private final Runnable mRunNext = new Runnable() {
+        @Override
+        public void run() {
+            RowTask<?> task;
+            synchronized( mLock ){
+                task = mNearest.poll();
+                if( task == null ){ return; }
+                mFurthest.remove(task);
+                mRunning.add(task);
+            }
+
+            task.execute();
+
+            synchronized( mLock ){
+                mRunning.remove(task);
+                mFinished.add(task);
+                if( mFramePosted ){ return; }
+                mFramePosted = true;
+            }
+            mHandler.post(mScheduleFrame);
+        }
+    };
+
+    private final Runnable mScheduleFrame = new Runnable() {
+        @Override
+        public void run() {
+            mFrameTicker.schedule();
+        }
+    };
+
+    private final FrameTicker.Callback mFrameCallback = new FrameTicker.Callback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            synchronized( mLock ){
+                mDelivering.addAll(mFinished);
+                mFinished.clear();
+                mFramePosted = false;
+            }
+            updateViewport();
+
+            for( int i=0, size=mDelivering.size(); i<size; i++ ){
+                RowTask<?> task = mDelivering.get(i);
+                // A row bound again since, or recycled, has a different task or none
+                if( task.mRow.getTag(R.id.synced_row_task) == task ){
+                    task.mRow.setTag(R.id.synced_row_task, null);
+                    task.deliver();
+                } else {
+                    task.discard();
+                }
+            }
+            mDelivering.clear();
+        }
+    };
+
+    /**
+     * Binary heap of tasks on their rank, each task keeps its place in the heap so it can be taken
+     * out from anywhere.
+     */
+    private static final class TaskHeap {
+
+        private final boolean mNearestFirst;
+        private RowTask<?>[] mTasks = new RowTask<?>[DEFAULT_MAX_PENDING + 1];
+        private int mSize = 0;
+
+        TaskHeap(boolean nearestFirst) {
+            mNearestFirst = nearestFirst;
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        /**
+         * @param index  Below {@link #size()}, in no particular order
+         */
+        RowTask<?> get(int index) {
+            return mTasks[index];
+        }
+
+        void add(RowTask<?> task) {
+            if( mSize == mTasks.length ){
+                mTasks = Arrays.copyOf(mTasks, mSize * 2);
+            }
+            place(task, mSize++);
+            siftUp(mSize - 1);
+        }
+
+        /**
+         * @return The first task, null if empty
+         */
+        RowTask<?> poll() {
+            if( mSize == 0 ){ return null; }
+            final RowTask<?> task = mTasks[0];
+            removeAt(0);
+            return task;
+        }
+
+        void remove(RowTask<?> task) {
+            final int index = mNearestFirst ? task.mNearIndex : task.mFarIndex;
+            if( index >= 0 && index < mSize && mTasks[index] == task ){
+                removeAt(index);
+            }
+        }
+
+        void clear() {
+            for( int i=0; i<mSize; i++ ){
+                setIndex(mTasks[i], -1);
+                mTasks[i] = null;
+            }
+            mSize = 0;
+        }
+
+        /**
+         * Restore the order after the ranks changed.
+         */
+        void heapify() {
+            for( int i=mSize / 2 - 1; i>=0; i-- ){
+                siftDown(i);
+            }
+        }
+
+        private void removeAt(int index) {
+            setIndex(mTasks[index], -1);
+            final RowTask<?> last = mTasks[--mSize];
+            mTasks[mSize] = null;
+            if( index == mSize ){ return; }
+            place(last, index);
+            siftDown(index);
+            siftUp(index);
+        }
+
+        private void siftUp(int index) {
+            final RowTask<?> task = mTasks[index];
+            while( index > 0 ){
+                final int parent = (index - 1) / 2;
+                if( !before(task, mTasks[parent]) ){ break; }
+                place(mTasks[parent], index);
+                index = parent;
+            }
+            place(task, index);
+        }
+
+        private void siftDown(int index) {
+            final RowTask<?> task = mTasks[index];
+            while( true ){
+                int child = index * 2 + 1;
+                if( child >= mSize ){ break; }
+                if( child + 1 < mSize && before(mTasks[child + 1], mTasks[child]) ){
+                    child++;
+                }
+                if( !before(mTasks[child], task) ){ break; }
+                place(mTasks[child], index);
+                index = child;
+            }
+            place(task, index);
+        }
+
+        private boolean before(RowTask<?> a, RowTask<?> b) {
+            return mNearestFirst ? a.mRank < b.mRank : a.mRank > b.mRank;
+        }
+
+        private void place(RowTask<?> task, int index) {
+            mTasks[index] = task;
+            setIndex(task, index);
+        }
+
+        private void setIndex(RowTask<?> task, int index) {
+            if( mNearestFirst ){
+                task.mNearIndex = index;
+            } else {
+                task.mFarIndex = index;
+            }
+        }
+    }
+
+    private static final ThreadFactory sThreadFactory = new ThreadFactory() {
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, "RowTaskScheduler #" + mCount.incrementAndGet());
+        }
+    };
+
+}
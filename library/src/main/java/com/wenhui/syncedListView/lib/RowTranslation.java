@@ -0,0 +1,42 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.view.View;
+
+final class RowTranslation {
+
+    private RowTranslation(){}
+
+    /**
+     * Whether translating the laid out rows by the offset keeps exactly the same rows on screen:
+     * no gap opens at either edge and no row leaves the viewport.
+     *
+     * @param first  First attached row
+     * @param last  Last attached row
+     * @param top  Top of the viewport, in the rows' parent coordinates
+     * @param bottom  Bottom of the viewport, in the rows' parent coordinates
+     * @param offset  Positive moves the content up
+     */
+    static boolean canTranslateBy(View first, View last, int top, int bottom, double offset){
+        if( offset > 0 ){
+            return first.getBottom() - offset > top && last.getBottom() - offset >= bottom;
+        }
+        return first.getTop() - offset <= top && last.getTop() - offset < bottom;
+    }
+
+}
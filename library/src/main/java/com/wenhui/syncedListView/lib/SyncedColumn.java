@@ -0,0 +1,180 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.support.v4.view.ViewCompat;
+import android.view.MotionEvent;
+import android.view.View;
+
+import com.wenhui.syncedListView.core.ColumnScrollState;
+
+/**
+ * One synchronized column of a synced layout: the view it drives plus the factors applied to touch
+ * scrolling and to auto scrolling.
+ */
+abstract class SyncedColumn extends ColumnScrollState implements View.OnLayoutChangeListener {
+
+    final View view;
+
+    /** Part of the scroll currently shown by translation, see {@link #setTranslationOffset(float)} */
+    float translationOffset;
+
+    /** Whether the column runs its own fling, see {@link #flingNatively(int)} */
+    boolean nativeFling;
+
+    /** {@link #getScrolledDistance()} when the native fling started */
+    long nativeFlingStart;
+
+    SyncedColumn(View view, float scrollFactor, float animationFactor) {
+        super(scrollFactor, animationFactor);
+        this.view = view;
+        if( view != null ){
+            view.addOnLayoutChangeListener(this);
+        }
+    }
+
+    /**
+     * The column was removed from its engine.
+     */
+    void release() {
+        if( view != null ){
+            view.removeOnLayoutChangeListener(this);
+        }
+        attachMetrics(null);
+    }
+
+    /**
+     * Called for every layout pass, whether the bounds changed or not.
+     */
+    @Override
+    public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                               int oldLeft, int oldTop, int oldRight, int oldBottom) {
+        countLayoutPass();
+    }
+
+    @Override
+    public final void scrollBy(int deltaY) {
+        if( SyncedTrace.ENABLED ){ SyncedTrace.begin(SyncedTrace.SCROLL_COLUMN); }
+        scrollColumnBy(deltaY);
+        if( SyncedTrace.ENABLED ){ SyncedTrace.end(); }
+    }
+
+    /**
+     * @param deltaY  Positive moves the content up
+     */
+    abstract void scrollColumnBy(int deltaY);
+
+    /**
+     * Show the distance not scrolled yet by translation, which needs no layout. This is the
+     * fraction of a pixel left after a scroll, or more when {@link #canTranslateBy(double)} allows.
+     * Translating the column view itself would uncover its edge, so only the default sub-pixel
+     * remainder is allowed unless a subclass translates its rows instead.
+     *
+     * @param offset  Positive moves the content up like {@link #scrollBy(int)}
+     */
+    @Override
+    public void setTranslationOffset(float offset) {
+        if( offset == translationOffset ){ return; }
+        translationOffset = offset;
+        view.setTranslationY(-offset);
+    }
+
+    /**
+     * @param direction  Positive for the direction {@link #scrollBy(int)} takes with a positive delta
+     * @return false once the column cannot move further that way
+     */
+    boolean canScroll(int direction) {
+        return ViewCompat.canScrollVertically(view, direction);
+    }
+
+    /**
+     * Start the column's own fling, which moves it from its own frame callbacks.
+     *
+     * @param velocity  Pixels per second, positive moves the content up
+     * @return false if the column has no fling of its own
+     */
+    boolean flingNatively(int velocity) {
+        return false;
+    }
+
+    void stopNativeFling() {
+    }
+
+    /**
+     * @return Distance the content has moved so far, positive up; only differences between calls
+     * mean something. Exact, unlike an offset built on estimated row heights.
+     */
+    long getScrolledDistance() {
+        return getScrollOffset();
+    }
+
+    /**
+     * @return Whether a {@link #getScrolledDistance()} since the last call passed rows that were
+     * never measured, so its sum holds estimated heights. Clears the flag.
+     */
+    boolean takeEstimatedDistance() {
+        return false;
+    }
+
+    /**
+     * @return The adapter if it takes prefetch calls, null otherwise
+     */
+    PrefetchAdapter getPrefetchAdapter() {
+        return null;
+    }
+
+    @Override
+    public boolean canPrefetch() {
+        return getPrefetchAdapter() != null;
+    }
+
+    @Override
+    public void prefetch(int position) {
+        getPrefetchAdapter().onPrefetch(position);
+    }
+
+    @Override
+    public int getViewportHeight() {
+        return view.getHeight() - view.getPaddingTop() - view.getPaddingBottom();
+    }
+
+    /**
+     * Jump to an absolute content offset.
+     *
+     * @return false if the column cannot scroll to absolute offsets
+     */
+    boolean scrollToOffset(long offset) {
+        return false;
+    }
+
+    /**
+     * @param x  Horizontal position in the host's content coordinates
+     */
+    boolean containsX(int x) {
+        return x >= view.getLeft() && x < view.getRight();
+    }
+
+    /**
+     * A tap within the column that no view took. Column views see the touch stream themselves, so
+     * only a column that handles clicks of its own does anything here.
+     *
+     * @param up  Up event in the host's coordinates
+     */
+    void dispatchTap(View host, MotionEvent up) {
+    }
+
+}
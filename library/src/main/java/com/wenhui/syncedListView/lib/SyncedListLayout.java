@@ -16,55 +16,35 @@
 
 package com.wenhui.syncedListView.lib;
 
-import android.annotation.TargetApi;
 import android.content.Context;
+import android.content.res.Resources;
 import android.content.res.TypedArray;
-import android.os.Build;
-import android.support.v4.view.GestureDetectorCompat;
-import android.support.v4.view.MotionEventCompat;
 import android.util.AttributeSet;
-import android.util.DisplayMetrics;
-import android.util.Log;
-import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.View;
-import android.view.WindowManager;
-import android.view.animation.LinearInterpolator;
 import android.widget.LinearLayout;
 import android.widget.ListView;
-import android.widget.OverScroller;
-import android.widget.Scroller;
 
+import com.wenhui.syncedListView.core.ExponentialFlingEngine;
+import com.wenhui.syncedListView.core.FlingEngine;
+import com.wenhui.syncedListView.core.FrameLog;
+import com.wenhui.syncedListView.core.FrameRecorder;
+import com.wenhui.syncedListView.core.ScrollMetrics;
+import com.wenhui.syncedListView.core.SplineFlingEngine;
 
-public class SyncedListLayout extends LinearLayout {
-
-	private static final String TAG = "SyncedListLayout";
 
-    private static final int TOUCH_MODE_FLING = 1;
-    private static final int TOUCH_MODE_SCROLL = 2;
-    private static final int TOUCH_MODE_REST = 0;
+public class SyncedListLayout extends LinearLayout {
 
-    private static final int DEFAULT_SCROLL_ANIMATION_DURATION = 60*1000; // MINUTE
-    private static final int DEFAULT_VELOCITY = 1500;  // PER MINUTE
-    private static final long DEFAULT_ANIMATION_DELAY = 10L;
+    private static final int LEFT = 0;
+    private static final int RIGHT = 1;
 
-    private ListView mListViewLeft;
-    private ListView mListViewRight;
-    private GestureDetectorCompat gestureDetector;
-    private int mLastFlingY = 0;
+    private SyncedScrollEngine mEngine;
     private float mRightScrollFactor = 0.8f;
     private float mLeftScrollFactor = 1.4f;
-    private MotionEvent mDownEvent;
-    private boolean mAnimating=false;
-    private boolean mRequestStopAnim = false;
-    private FlingRunnable mFlingRunnable;
-    private AnimationRunnable mAnimationRunnable;
-    private int mAnimationDuration = DEFAULT_SCROLL_ANIMATION_DURATION;
-    private int mAnimationVelocity = DEFAULT_VELOCITY;
     private int mLeftListId=0, mRightListId=0;
     private float mLeftAnimationScrollFactor = 2f, mRightAnimationScrollFactor=1f;
-    private Scroller mScroller;
-    private int mTouchMode = TOUCH_MODE_REST;
+    private int[] mColumnIds;
+    private float[] mColumnScrollFactors, mColumnAnimationFactors;
 
 
     public SyncedListLayout(Context context) {
@@ -90,166 +70,250 @@ public class SyncedListLayout extends LinearLayout {
             mRightListId = a.getResourceId(R.styleable.SyncedListLayout_right_id, 0);
             mLeftScrollFactor = a.getFloat(R.styleable.SyncedListLayout_left_scroll_factor, 1f);
             mRightScrollFactor = a.getFloat(R.styleable.SyncedListLayout_right_scroll_factor, 1f);
+
+            int columnIdsRes = a.getResourceId(R.styleable.SyncedListLayout_column_ids, 0);
+            if( columnIdsRes != 0 ){
+                Resources res = context.getResources();
+                int scrollFactorsRes = a.getResourceId(R.styleable.SyncedListLayout_column_scroll_factors, 0);
+                int animFactorsRes = a.getResourceId(R.styleable.SyncedListLayout_column_animation_factors, 0);
+                mColumnIds = readIds(res, columnIdsRes);
+                mColumnScrollFactors = readFactors(res, scrollFactorsRes, mColumnIds.length);
+                mColumnAnimationFactors = readFactors(res, animFactorsRes, mColumnIds.length);
+            }
         }finally {
             a.recycle();
         }
 
-        WindowManager wm = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
-        DisplayMetrics metric = new DisplayMetrics();
-        wm.getDefaultDisplay().getMetrics(metric);
-        mAnimationVelocity = (int)(DEFAULT_VELOCITY * metric.density);
+        mEngine = new SyncedScrollEngine(this);
+    }
+
+    static int[] readIds(Resources res, int arrayRes){
+        TypedArray array = res.obtainTypedArray(arrayRes);
+        try{
+            int[] ids = new int[array.length()];
+            for( int i=0; i<ids.length; i++ ){
+                ids[i] = array.getResourceId(i, 0);
+            }
+            return ids;
+        }finally {
+            array.recycle();
+        }
+    }
 
-        gestureDetector = new GestureDetectorCompat(context, gestureListener);
-        mScroller = new Scroller(context);
+    static float[] readFactors(Resources res, int arrayRes, int count){
+        float[] factors = new float[count];
+        TypedArray array = arrayRes == 0 ? null : res.obtainTypedArray(arrayRes);
+        try{
+            for( int i=0; i<count; i++ ){
+                factors[i] = (array != null && i < array.length()) ? array.getFloat(i, 1f) : 1f;
+            }
+            return factors;
+        }finally {
+            if( array != null ){ array.recycle(); }
+        }
+    }
 
-        mAnimationRunnable = new AnimationRunnable(context);
-        mFlingRunnable = new FlingRunnable();
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mEngine.onAttachedToWindow();
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
-        stopAnimation();
-        removeCallbacks(mAnimationRunnable);
+        mEngine.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        mEngine.onHostStateChanged();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        // Dispatched from the View constructor when visibility is set in xml
+        if( mEngine != null ){
+            mEngine.onHostStateChanged();
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        super.onLayout(changed, l, t, r, b);
+        // Columns may only now have rows to scroll
+        mEngine.onHostStateChanged();
     }
 
     @Override
     protected void onFinishInflate() {
         super.onFinishInflate();
-        mListViewLeft = (ListView) findViewById(mLeftListId);
-        mListViewRight = (ListView) findViewById(mRightListId);
+        if( mLeftListId != 0 || mRightListId != 0 ){
+            ListView left = (ListView) findViewById(mLeftListId);
+            ListView right = (ListView) findViewById(mRightListId);
+            if( right == null || left == null ){
+                throw new IllegalStateException("Either left list or right list cannot be null");
+            }
+            addColumn(left, mLeftScrollFactor, mLeftAnimationScrollFactor);
+            addColumn(right, mRightScrollFactor, mRightAnimationScrollFactor);
+        }
 
-        if( mListViewRight == null || mListViewLeft == null ){
-            throw new IllegalStateException("Either left list or right list cannot be null");
+        if( mColumnIds != null ){
+            for( int i=0; i<mColumnIds.length; i++ ){
+                ListView list = (ListView) findViewById(mColumnIds[i]);
+                if( list == null ){
+                    throw new IllegalStateException("Cannot find column list at index " + i);
+                }
+                addColumn(list, mColumnScrollFactors[i], mColumnAnimationFactors[i]);
+            }
         }
 
     }
 
     @Override
     public boolean onInterceptTouchEvent(MotionEvent ev) {
-    	return true;
+        return mEngine.onInterceptTouchEvent(ev);
+    }
+
+    @Override
+    public void requestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+        super.requestDisallowInterceptTouchEvent(disallowIntercept);
+        mEngine.onDisallowInterceptTouchEvent(disallowIntercept);
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        boolean handle = gestureDetector.onTouchEvent(event);
-        int action = MotionEventCompat.getActionMasked(event);
-        switch( action ){
-            case MotionEvent.ACTION_CANCEL:
-            case MotionEvent.ACTION_UP:
-                Log.d(TAG, "touch mode " + mTouchMode);
-                if( mTouchMode != TOUCH_MODE_FLING ){
-                    startAnimationInternal(DEFAULT_ANIMATION_DELAY);
-                }
+        return mEngine.onTouchEvent(event);
+    }
 
-                mTouchMode = TOUCH_MODE_REST;
-                break;
-        }
-        return handle;
-    }
-    
-	private void dispatchTouchToList(final MotionEvent e){
-		if( mDownEvent == null ){ return; }
-
-        int leftListWidth = mListViewLeft.getWidth();
-
-        if (mDownEvent.getX() <= mListViewLeft.getWidth()) {
-            mListViewLeft.dispatchTouchEvent(mDownEvent);
-            mListViewLeft.dispatchTouchEvent(e);
-        } else {
-            // For some reason, this will only recognize x of left list
-            mDownEvent.offsetLocation(-leftListWidth, 0f);
-            e.offsetLocation(-leftListWidth, 0f);
-            mListViewRight.dispatchTouchEvent(mDownEvent);
-            mListViewRight.dispatchTouchEvent(e);
+    /**
+     * Add a list as the next synced column. Every column is driven by the same gesture and the same
+     * auto scroll, with its own factors applied to the shared distance.
+     *
+     * @param list  The list to drive, usually a child of this layout
+     * @param scrollFactor  Factor applied to touch scrolling and fling
+     * @param animationFactor  Factor applied to auto scrolling
+     */
+    public void addColumn(ListView list, float scrollFactor, float animationFactor){
+        if( list == null ){
+            throw new IllegalArgumentException("Column list cannot be null");
         }
+        mEngine.addColumn(new ListColumn(list, scrollFactor, animationFactor));
+    }
 
-        mDownEvent.recycle();
-        mDownEvent = null;
-	}
-
-    @Override
-    public void computeScroll() {
-        if ( mScroller.computeScrollOffset() ){
-
-            if( mAnimating ){ stopAnimationInternal(); }
+    public void removeColumn(ListView list){
+        mEngine.removeColumn(list);
+    }
 
-            int curY = mScroller.getCurrY();
-            int distance = curY - mLastFlingY;
-            mLastFlingY = curY;
+    public int getColumnCount(){
+        return mEngine.getColumnCount();
+    }
 
-            if( distance != 0 ){
-                mFlingRunnable.setDistance(distance);
-                post(mFlingRunnable);
-            }
+    public ListView getColumnAt(int index){
+        return ((ListColumn) mEngine.getColumn(index)).listView;
+    }
 
-            if ( mScroller.isFinished() || distance == 0 ) {
-                startAnimationInternal(DEFAULT_ANIMATION_DELAY);
-            }
+    public void setColumnScrollFactor(int index, float factor){
+        mEngine.getColumn(index).setScrollFactor(factor);
+    }
 
-        }
+    public void setColumnAnimationScrollFactor(int index, float factor){
+        mEngine.getColumn(index).setAnimationFactor(factor);
+    }
 
+    /**
+     * @param friction  Multiplier of the fling engine's friction for this column, 1 by default
+     */
+    public void setColumnFlingFriction(int index, float friction){
+        mEngine.getColumn(index).setFlingFriction(friction);
     }
 
+    /**
+     * @deprecated Use {@link #addColumn(ListView, float, float)}
+     */
+    @Deprecated
     public void setLeftListView(ListView left){
-        this.mListViewLeft = left;
+        mEngine.setColumn(LEFT, new ListColumn(left, mLeftScrollFactor, mLeftAnimationScrollFactor));
     }
 
+    /**
+     * @deprecated Use {@link #addColumn(ListView, float, float)}
+     */
+    @Deprecated
     public void setRightListView(ListView right){
-        this.mListViewRight = right;
+        mEngine.setColumn(RIGHT, new ListColumn(right, mRightScrollFactor, mRightAnimationScrollFactor));
     }
 
+    /**
+     * @deprecated Use {@link #setColumnAnimationScrollFactor(int, float)}
+     */
+    @Deprecated
     public void setLeftAnimationScrollFactor(float factor){
         this.mLeftAnimationScrollFactor = factor;
+        if( getColumnCount() > LEFT ){ setColumnAnimationScrollFactor(LEFT, factor); }
     }
 
+    /**
+     * @deprecated Use {@link #setColumnAnimationScrollFactor(int, float)}
+     */
+    @Deprecated
     public void setRightAnimationScrollFactor(float factor){
         this.mRightAnimationScrollFactor= factor;
+        if( getColumnCount() > RIGHT ){ setColumnAnimationScrollFactor(RIGHT, factor); }
     }
 
-    public boolean isAnimating() {
-        return mAnimating;
+    /**
+     * @return Absolute content offset of the column, from the row heights measured so far with
+     * the rest estimated. Wrapping columns keep counting past their first cycle. -1 if the column
+     * has no rows.
+     */
+    public long getColumnScrollOffset(int index){
+        return mEngine.getColumnScrollOffset(index);
     }
 
-    public void startAnimation(long delay) {
-        mRequestStopAnim = false;
-        startAnimationInternal(delay);
+    /**
+     * Scroll a column to an absolute content offset, see {@link #getColumnScrollOffset(int)}.
+     *
+     * @return false if the column has no rows
+     */
+    public boolean scrollColumnTo(int index, long offset){
+        return mEngine.scrollColumnTo(index, offset);
     }
 
-    private void startAnimationInternal(long delay){
-        if( mAnimating ){ return; }
-
-        if(mRequestStopAnim ){ return; }
-
-        mAnimating = true;
-        postDelayed(mAnimationLaunchRunnable, delay);
+    public boolean isAnimating() {
+        return mEngine.isAnimating();
     }
 
-    private Runnable mAnimationLaunchRunnable = new Runnable() {
-        @Override
-        public void run() {
-            mAnimationRunnable.startAnimation(mAnimationVelocity, mAnimationDuration);
-        }
-    };
-
-    public void stopAnimation(){
-        mRequestStopAnim = true;
-        stopAnimationInternal();
+    /**
+     * Start the auto scroll. It pauses by itself while the layout is hidden, detached or has
+     * nothing left to scroll, and resumes when that changes.
+     */
+    public void startAnimation(long delay) {
+        mEngine.startAnimation(delay);
     }
 
-    private void stopAnimationInternal(){
-        mAnimating = false;
-        removeCallbacks(mAnimationLaunchRunnable);
-        mAnimationRunnable.cancel();
-		removeCallbacks(mAnimationRunnable);
+    public void stopAnimation(){
+        mEngine.stopAnimation();
     }
 
+    /**
+     * @deprecated Use {@link #setColumnScrollFactor(int, float)}
+     */
+    @Deprecated
     public void setLeftScrollFactor(float factor){
         this.mLeftScrollFactor = factor;
+        if( getColumnCount() > LEFT ){ setColumnScrollFactor(LEFT, factor); }
     }
 
+    /**
+     * @deprecated Use {@link #setColumnScrollFactor(int, float)}
+     */
+    @Deprecated
     public void setRightScrollFactor(float factor){
         this.mRightScrollFactor = factor;
+        if( getColumnCount() > RIGHT ){ setColumnScrollFactor(RIGHT, factor); }
     }
 
     /**
@@ -257,130 +321,104 @@ public class SyncedListLayout extends LinearLayout {
      * @param velocity  Distance per second
      */
     public void setAnimationVelocity(int velocity){
-        this.mAnimationVelocity = velocity * 60;
+        mEngine.setAnimationVelocity(velocity);
     }
 
-    private class FlingRunnable implements Runnable {
-        private float distance = 0;
-
-        public void setDistance(float distance){
-            this.distance = distance;
-        }
-
-        @Override
-        public void run() {
-            scrollListBy(distance, mLeftScrollFactor, mRightScrollFactor);
-        }
+    /**
+     * Lower or pause the auto scroll rate from the battery saver, battery and thermal state, the
+     * speed stays the same. Null, the default, updates on every frame.
+     *
+     * @see PowerAwareAutoScrollPolicy
+     */
+    public void setAutoScrollPolicy(AutoScrollPolicy policy){
+        mEngine.setAutoScrollPolicy(policy);
     }
 
-    private void scrollListBy(float distance, float leftScrollFactor, float rightScrollFactor){
-        scrollListBy(mListViewRight, (int) (distance * rightScrollFactor + 0.5f));
-        scrollListBy(mListViewLeft, (int) (distance * leftScrollFactor + 0.5f));
+    /**
+     * Report the device's thermal state to the {@link AutoScrollPolicy}, for instance from the
+     * app's own temperature or frame time monitoring.
+     */
+    public void setThermalThrottled(boolean throttled){
+        mEngine.setThermalThrottled(throttled);
     }
 
-    private void scrollListBy(ListView target, int deltaY) {
-        final int firstPosition = target.getFirstVisiblePosition();
-        if (firstPosition == ListView.INVALID_POSITION) {
-            return;
-        }
-
-        final View firstView = target.getChildAt(0);
-        if( firstView == null ){ return; }
-
-        final int newTop = firstView.getTop() - deltaY;
-        target.setSelectionFromTop(firstPosition, newTop);
+    /**
+     * How far ahead of the auto scroll a column's {@link PrefetchAdapter} hears about rows, one
+     * second by default.
+     *
+     * @param millis  Auto scroll time ahead, 0 to stop prefetching
+     */
+    public void setPrefetchHorizon(long millis){
+        mEngine.setPrefetchHorizon(millis);
     }
 
-    private GestureDetector.SimpleOnGestureListener gestureListener = new GestureDetector.SimpleOnGestureListener() {
-
-        @Override
-        public boolean onDown(MotionEvent e) {
-			mScroller.forceFinished(true);	
-			if( mDownEvent != null ){
-				mDownEvent.recycle();
-			}
-			mDownEvent = MotionEvent.obtain(e);
-			removeCallbacks(mFlingRunnable);
-			stopAnimationInternal();
-            return true;
-        }
-
-        @Override
-        public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
-            mTouchMode = TOUCH_MODE_FLING;
-            mLastFlingY = mListViewRight.getScrollY();
-            mScroller.fling(0, mLastFlingY, 0, (int)-velocityY, Integer.MIN_VALUE, Integer.MAX_VALUE,
-            		Integer.MIN_VALUE, Integer.MAX_VALUE);
-
-            return true;
-        }
-
-        @Override
-        public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
-            mTouchMode = TOUCH_MODE_SCROLL;
-        	mFlingRunnable.setDistance(distanceY);
-        	post(mFlingRunnable);
-            return true;
-        }
-
-		@Override
-		public boolean onSingleTapUp(MotionEvent e) {
-            dispatchTouchToList(e);
-			return false;
-		}
-
-    };
-
-    private class AnimationRunnable implements Runnable {
-        private int lastY;
-        private final OverScroller scroller;
-        private int distance, duration;
-        private boolean cancelled = false;
-
-        public AnimationRunnable(Context context){
-            scroller = new OverScroller(context, new LinearInterpolator());
-        }
-
-        public void startAnimation(int distance, int duration){
-            cancelled = false;
-            this.distance = distance;
-            this.duration = duration;
-            lastY = mListViewRight.getScrollY();
-            animate();
-        }
+    /**
+     * Physics of the flings, {@link SplineFlingEngine} like the platform's scrollers by default, or
+     * {@link ExponentialFlingEngine}. Null goes back to the default.
+     */
+    public void setFlingEngine(FlingEngine engine){
+        mEngine.setFlingEngine(engine);
+    }
 
-        private void animate(){
-            scroller.startScroll(0, lastY, 0, distance, duration);
-            post(this);
-        }
+    /**
+     * End every fling on a row boundary, the nearest to where it would have stopped. Columns that
+     * cannot report absolute offsets do not snap.
+     */
+    public void setFlingSnap(boolean snap){
+        mEngine.setFlingSnap(snap);
+    }
 
-        public void cancel(){
-            cancelled = true;
-            scroller.forceFinished(true);
-        }
+    /**
+     * Let every column fling itself with its share of the velocity, the columns are kept aligned
+     * by correcting their drift before each draw. Their own physics and friction apply then, and
+     * flings do not snap. ListView columns fling natively from Lollipop on, older ones replay the
+     * shared fling.
+     */
+    public void setNativeFling(boolean enabled){
+        mEngine.setNativeFling(enabled);
+    }
 
-        @Override
-        public void run() {
-            if( cancelled ){
-                return;
-            }
+    /**
+     * Move drags on the frame callback, to where the finger is predicted to be when the frame is
+     * displayed. Cuts the lag of the content behind the finger, at the cost of a small overshoot
+     * when the finger stops. {@link ScrollMetrics#getTouchLatency()} measures the lag left.
+     */
+    public void setLowLatencyDrag(boolean enabled){
+        mEngine.setLowLatencyDrag(enabled);
+    }
 
-            boolean hasMore = scroller.computeScrollOffset();
-            int y = scroller.getCurrY();
-            int yDiff = y - lastY;
-            if( yDiff != 0 ){
-                scrollListBy(yDiff, mLeftAnimationScrollFactor, mRightAnimationScrollFactor);
-                lastY = y;
-            }
+    /**
+     * Record frame intervals, dropped frames, layout passes, row views created or recycled and
+     * scroll time. Recording does not allocate, so it can stay on in production.
+     */
+    public void setMetricsEnabled(boolean enabled){
+        mEngine.setMetricsEnabled(enabled);
+    }
 
-            if( hasMore ){
-                post(this);
-            } else {
-                animate();
-            }
+    /**
+     * @return The live metrics, to read on the main thread or copy into a snapshot with
+     * {@link ScrollMetrics#copyTo(ScrollMetrics)}. Null while metrics are off.
+     */
+    public ScrollMetrics getMetrics(){
+        return mEngine.getMetrics();
+    }
 
-        }
+    /**
+     * Write a compact record of every frame, with each column's offset and layout passes, into
+     * the recorder's ring buffer file; decode it with {@link FrameLog}. Null to stop, the caller
+     * closes the recorder.
+     */
+    public void setFrameRecorder(FrameRecorder recorder){
+        mEngine.setFrameRecorder(recorder);
     }
 
+    /**
+     * Auto scroll by translating the rows, which only updates render properties, and scroll the
+     * lists for real only when a row would enter or leave the viewport. A list with dividers draws
+     * them at its own positions, so it only translates the sub-pixel remainder.
+     */
+    public void setTranslationAutoScroll(boolean enabled){
+        mEngine.setTranslationAutoScroll(enabled);
+    }
 
 }
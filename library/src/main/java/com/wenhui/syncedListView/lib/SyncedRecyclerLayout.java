@@ -0,0 +1,302 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.support.v7.widget.RecyclerView;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.LinearLayout;
+
+import com.wenhui.syncedListView.core.ExponentialFlingEngine;
+import com.wenhui.syncedListView.core.FlingEngine;
+import com.wenhui.syncedListView.core.FrameLog;
+import com.wenhui.syncedListView.core.FrameRecorder;
+import com.wenhui.syncedListView.core.ScrollMetrics;
+import com.wenhui.syncedListView.core.SplineFlingEngine;
+
+/**
+ * {@link RecyclerView} sibling of {@link SyncedListLayout}. Columns are scrolled through their
+ * layout managers, so they get item animations without ListView layout passes, and share one
+ * {@link RecyclerView.RecycledViewPool}.
+ * <p>
+ * The pool only knows view types, a holder recycled by one column is bound by any other column
+ * with the same type. Columns whose rows differ must report view types no other column uses, see
+ * {@link InfiniteRecyclerAdapter#getItemViewTypeAt(int)}.
+ */
+public class SyncedRecyclerLayout extends LinearLayout {
+
+    private SyncedScrollEngine mEngine;
+    private RecyclerView.RecycledViewPool mRecycledViewPool;
+    private int[] mColumnIds;
+    private float[] mColumnScrollFactors, mColumnAnimationFactors;
+
+    public SyncedRecyclerLayout(Context context) {
+        super(context);
+        init(context, null);
+    }
+
+    public SyncedRecyclerLayout(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        init(context, attrs);
+    }
+
+    public SyncedRecyclerLayout(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init(context, attrs);
+    }
+
+    private void init(Context context, AttributeSet attrs ) {
+
+        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.SyncedRecyclerLayout);
+        try{
+            int columnIdsRes = a.getResourceId(R.styleable.SyncedRecyclerLayout_column_ids, 0);
+            if( columnIdsRes != 0 ){
+                Resources res = context.getResources();
+                int scrollFactorsRes = a.getResourceId(R.styleable.SyncedRecyclerLayout_column_scroll_factors, 0);
+                int animFactorsRes = a.getResourceId(R.styleable.SyncedRecyclerLayout_column_animation_factors, 0);
+                mColumnIds = SyncedListLayout.readIds(res, columnIdsRes);
+                mColumnScrollFactors = SyncedListLayout.readFactors(res, scrollFactorsRes, mColumnIds.length);
+                mColumnAnimationFactors = SyncedListLayout.readFactors(res, animFactorsRes, mColumnIds.length);
+            }
+        }finally {
+            a.recycle();
+        }
+
+        mRecycledViewPool = new RecyclerView.RecycledViewPool();
+        mEngine = new SyncedScrollEngine(this);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mEngine.onAttachedToWindow();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mEngine.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        mEngine.onHostStateChanged();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        // Dispatched from the View constructor when visibility is set in xml
+        if( mEngine != null ){
+            mEngine.onHostStateChanged();
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        super.onLayout(changed, l, t, r, b);
+        // Columns may only now have rows to scroll
+        mEngine.onHostStateChanged();
+    }
+
+    @Override
+    protected void onFinishInflate() {
+        super.onFinishInflate();
+        if( mColumnIds != null ){
+            for( int i=0; i<mColumnIds.length; i++ ){
+                RecyclerView column = (RecyclerView) findViewById(mColumnIds[i]);
+                if( column == null ){
+                    throw new IllegalStateException("Cannot find column RecyclerView at index " + i);
+                }
+                addColumn(column, mColumnScrollFactors[i], mColumnAnimationFactors[i]);
+            }
+        }
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
+        return mEngine.onInterceptTouchEvent(ev);
+    }
+
+    @Override
+    public void requestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+        super.requestDisallowInterceptTouchEvent(disallowIntercept);
+        mEngine.onDisallowInterceptTouchEvent(disallowIntercept);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        return mEngine.onTouchEvent(event);
+    }
+
+    /**
+     * Add a RecyclerView as the next synced column, it starts sharing this layout's
+     * {@link RecyclerView.RecycledViewPool}. Its adapter's view types must only be shared with
+     * columns that can bind the same holders.
+     *
+     * @param column  Must have a vertical layout manager
+     * @param scrollFactor  Factor applied to touch scrolling and fling
+     * @param animationFactor  Factor applied to auto scrolling
+     */
+    public void addColumn(RecyclerView column, float scrollFactor, float animationFactor){
+        if( column == null ){
+            throw new IllegalArgumentException("Column RecyclerView cannot be null");
+        }
+        column.setRecycledViewPool(mRecycledViewPool);
+        mEngine.addColumn(new RecyclerColumn(column, scrollFactor, animationFactor));
+    }
+
+    /**
+     * The column gets a pool of its own again, its holders stay out of the other columns.
+     */
+    public void removeColumn(RecyclerView column){
+        mEngine.removeColumn(column);
+        if( column.getRecycledViewPool() == mRecycledViewPool ){
+            column.setRecycledViewPool(null);
+        }
+    }
+
+    public int getColumnCount(){
+        return mEngine.getColumnCount();
+    }
+
+    public RecyclerView getColumnAt(int index){
+        return ((RecyclerColumn) mEngine.getColumn(index)).recyclerView;
+    }
+
+    public void setColumnScrollFactor(int index, float factor){
+        mEngine.getColumn(index).setScrollFactor(factor);
+    }
+
+    public void setColumnAnimationScrollFactor(int index, float factor){
+        mEngine.getColumn(index).setAnimationFactor(factor);
+    }
+
+    /**
+     * @param friction  Multiplier of the fling engine's friction for this column, 1 by default
+     */
+    public void setColumnFlingFriction(int index, float friction){
+        mEngine.getColumn(index).setFlingFriction(friction);
+    }
+
+    /**
+     * Pool shared by every column, holders go to any column asking for their view type. Size it with
+     * {@link RecyclerView.RecycledViewPool#setMaxRecycledViews(int, int)} when columns have many rows.
+     */
+    public RecyclerView.RecycledViewPool getRecycledViewPool(){
+        return mRecycledViewPool;
+    }
+
+    public boolean isAnimating() {
+        return mEngine.isAnimating();
+    }
+
+    /**
+     * Start the auto scroll. It pauses by itself while the layout is hidden, detached or has
+     * nothing left to scroll, and resumes when that changes.
+     */
+    public void startAnimation(long delay) {
+        mEngine.startAnimation(delay);
+    }
+
+    public void stopAnimation(){
+        mEngine.stopAnimation();
+    }
+
+    /**
+     *
+     * @param velocity  Distance per second
+     */
+    public void setAnimationVelocity(int velocity){
+        mEngine.setAnimationVelocity(velocity);
+    }
+
+    /**
+     * Lower or pause the auto scroll rate from the battery saver, battery and thermal state, the
+     * speed stays the same. Null, the default, updates on every frame.
+     *
+     * @see PowerAwareAutoScrollPolicy
+     */
+    public void setAutoScrollPolicy(AutoScrollPolicy policy){
+        mEngine.setAutoScrollPolicy(policy);
+    }
+
+    /**
+     * Report the device's thermal state to the {@link AutoScrollPolicy}, for instance from the
+     * app's own temperature or frame time monitoring.
+     */
+    public void setThermalThrottled(boolean throttled){
+        mEngine.setThermalThrottled(throttled);
+    }
+
+    /**
+     * Physics of the flings, {@link SplineFlingEngine} like the platform's scrollers by default, or
+     * {@link ExponentialFlingEngine}. Null goes back to the default.
+     */
+    public void setFlingEngine(FlingEngine engine){
+        mEngine.setFlingEngine(engine);
+    }
+
+    /**
+     * Let every column fling itself with its share of the velocity, the columns are kept aligned
+     * by correcting their drift before each draw. Their own physics and friction apply then, and
+     * flings do not snap. A column under its minimum fling velocity replays the shared fling.
+     */
+    public void setNativeFling(boolean enabled){
+        mEngine.setNativeFling(enabled);
+    }
+
+    /**
+     * Move drags on the frame callback, to where the finger is predicted to be when the frame is
+     * displayed. Cuts the lag of the content behind the finger, at the cost of a small overshoot
+     * when the finger stops. {@link ScrollMetrics#getTouchLatency()} measures the lag left.
+     */
+    public void setLowLatencyDrag(boolean enabled){
+        mEngine.setLowLatencyDrag(enabled);
+    }
+
+    /**
+     * Record frame intervals, dropped frames, layout passes, row views created or recycled and
+     * scroll time. Recording does not allocate, so it can stay on in production.
+     */
+    public void setMetricsEnabled(boolean enabled){
+        mEngine.setMetricsEnabled(enabled);
+    }
+
+    /**
+     * @return The live metrics, to read on the main thread or copy into a snapshot with
+     * {@link ScrollMetrics#copyTo(ScrollMetrics)}. Null while metrics are off.
+     */
+    public ScrollMetrics getMetrics(){
+        return mEngine.getMetrics();
+    }
+
+    /**
+     * Write a compact record of every frame, with each column's offset and layout passes, into
+     * the recorder's ring buffer file; decode it with {@link FrameLog}. Null to stop, the caller
+     * closes the recorder.
+     */
+    public void setFrameRecorder(FrameRecorder recorder){
+        mEngine.setFrameRecorder(recorder);
+    }
+
+}
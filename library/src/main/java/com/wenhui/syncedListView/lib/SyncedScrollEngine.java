@@ -0,0 +1,999 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.support.v4.view.MotionEventCompat;
+import android.util.DisplayMetrics;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.VelocityTracker;
+import android.view.ViewConfiguration;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+import android.view.WindowManager;
+
+import com.wenhui.syncedListView.core.AutoScrollClock;
+import com.wenhui.syncedListView.core.ColumnFling;
+import com.wenhui.syncedListView.core.ColumnSync;
+import com.wenhui.syncedListView.core.FlingEngine;
+import com.wenhui.syncedListView.core.FrameRecorder;
+import com.wenhui.syncedListView.core.ScrollMetrics;
+import com.wenhui.syncedListView.core.SplineFlingEngine;
+import com.wenhui.syncedListView.core.TouchPredictor;
+
+/**
+ * Gesture and animation pipeline shared by the synced layouts. The touch stream is tracked against
+ * the touch slop with one {@link VelocityTracker}, each column flings on its own
+ * {@link ColumnFling}, and one frame callback drives every registered {@link SyncedColumn}. The
+ * host view only forwards its touch and window events.
+ */
+final class SyncedScrollEngine {
+
+    /** A pointer is down, its events still go to the column views */
+    private static final int TOUCH_MODE_DOWN = 1;
+    /** Dragged past the touch slop, the gesture belongs to the columns */
+    private static final int TOUCH_MODE_SCROLL = 2;
+    private static final int TOUCH_MODE_REST = 0;
+    private static final int INVALID_POINTER = -1;
+
+    private static final int DEFAULT_VELOCITY = 1500;  // PER MINUTE
+    private static final long DEFAULT_ANIMATION_DELAY = 10L;
+    private static final long DEFAULT_PREFETCH_HORIZON = 1000L;
+    private static final long PREFETCH_INTERVAL_NANOS = 100000000L;
+    private static final int MAX_PREFETCH_PER_PASS = 8;
+    /** Frames without a move that end a native fling */
+    private static final int NATIVE_FLING_IDLE_FRAMES = 3;
+    /** A drag without a frame for this long is a finger at rest, not a stall */
+    private static final long DRAG_PAUSE_NANOS = 100000000L;
+
+    private final View mHost;
+    private final ColumnSync<SyncedColumn> mColumns = new ColumnSync<SyncedColumn>();
+    private final VelocityTracker mVelocityTracker = VelocityTracker.obtain();
+    private final int mTouchSlop;
+    private final int mMinFlingVelocity;
+    private final int mMaxFlingVelocity;
+    private int mActivePointerId = INVALID_POINTER;
+    private float mLastTouchY;
+    private boolean mLowLatencyDrag = false;
+    private final TouchPredictor mTouchPredictor = new TouchPredictor();
+    /** Finger position the columns show in the low latency drag, predicted ahead of mLastTouchY */
+    private float mAppliedTouchY;
+    /** Time of the newest touch sample not yet shown by a frame, 0 if none */
+    private long mTouchSampleNanos = 0L;
+    private FlingEngine mFlingEngine;
+    private boolean mFlinging = false;
+    private boolean mFlingSnap = false;
+    private boolean mNativeFling = false;
+    /** Physics of the columns' own flings */
+    private final FlingEngine mPlatformFling;
+    /** Column the others follow during a native fling, null while none runs */
+    private SyncedColumn mNativeLeader;
+    private long mNativeLeaderDistance;
+    private int mNativeIdleFrames;
+    private final AutoScroller mAutoScroller;
+    private final FrameTicker mFrameTicker;
+    /** Down position of the current gesture in the host's coordinates */
+    private float mDownX, mDownY;
+    private boolean mAnimating=false;
+    private boolean mRequestStopAnim = false;
+    private int mTouchMode = TOUCH_MODE_REST;
+    private boolean mTranslationAutoScroll = false;
+    private boolean mAttached = false;
+    private boolean mSuspended = true;
+    private long mResumeDelay = DEFAULT_ANIMATION_DELAY;
+    private final Rect mVisibleRect = new Rect();
+    private final PowerState mPowerState = new PowerState();
+    private AutoScrollPolicy mPolicy;
+    private PowerMonitor mPowerMonitor;
+    /** Minimum time between auto scroll updates, 0 for every frame, -1 while paused by the policy */
+    private long mAutoScrollIntervalNanos = 0L;
+    private long mPrefetchHorizonNanos = DEFAULT_PREFETCH_HORIZON * 1000000L;
+    private long mLastPrefetchNanos = 0L;
+    private final long mFramePeriodNanos;
+    /** Null while metrics are off */
+    private ScrollMetrics mMetrics;
+    private FrameRecorder mFrameRecorder;
+    /** Time of the previous frame while frames follow each other, 0 otherwise */
+    private long mLastFrameNanos = 0L;
+
+    SyncedScrollEngine(View host){
+        mHost = host;
+        Context context = host.getContext();
+
+        WindowManager wm = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        DisplayMetrics metric = new DisplayMetrics();
+        wm.getDefaultDisplay().getMetrics(metric);
+        float refreshRate = wm.getDefaultDisplay().getRefreshRate();
+        mFramePeriodNanos = (long) (1000000000L / (refreshRate >= 1f ? refreshRate : 60f));
+
+        ViewConfiguration configuration = ViewConfiguration.get(context);
+        mTouchSlop = configuration.getScaledTouchSlop();
+        mMinFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+        mMaxFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+        mFlingEngine = new SplineFlingEngine(metric.density * 160f);
+        mPlatformFling = new SplineFlingEngine(metric.density * 160f, ViewConfiguration.getScrollFriction());
+
+        mAutoScroller = new AutoScroller((int)(DEFAULT_VELOCITY * metric.density));
+        mFrameTicker = FrameTicker.create(host, mFrameCallback);
+    }
+
+    void addColumn(SyncedColumn column){
+        if( column.view != null && indexOfColumn(column.view) >= 0 ){
+            throw new IllegalStateException("View is already a synced column");
+        }
+        mColumns.add(column);
+        onColumnsChanged();
+    }
+
+    void setColumn(int index, SyncedColumn column){
+        if( index < mColumns.size() ){
+            mColumns.get(index).release();
+        }
+        mColumns.set(index, column);
+        onColumnsChanged();
+    }
+
+    void removeColumn(View view){
+        int index = indexOfColumn(view);
+        if( index >= 0 ){
+            mColumns.get(index).release();
+            mColumns.remove(index);
+            onColumnsChanged();
+        }
+    }
+
+    /**
+     * Metrics are recorded by column index, so every column is attached again.
+     */
+    private void onColumnsChanged(){
+        if( mMetrics == null ){ return; }
+        mMetrics.ensureColumns(mColumns.size());
+        for( int i=0, count=mColumns.size(); i<count; i++ ){
+            mColumns.get(i).attachMetrics(mMetrics.getColumn(i));
+        }
+    }
+
+    /**
+     * Recording does not allocate, so metrics can stay on in production.
+     */
+    void setMetricsEnabled(boolean enabled){
+        if( enabled == (mMetrics != null) ){ return; }
+        if( enabled ){
+            mMetrics = new ScrollMetrics();
+            onColumnsChanged();
+        } else {
+            mMetrics = null;
+            for( int i=0, count=mColumns.size(); i<count; i++ ){
+                mColumns.get(i).attachMetrics(null);
+            }
+        }
+    }
+
+    /**
+     * @return The live metrics, null while off
+     */
+    ScrollMetrics getMetrics(){
+        return mMetrics;
+    }
+
+    /**
+     * Write a record of every frame to the recorder, null to stop. The caller keeps ownership and
+     * closes it after setting null.
+     */
+    void setFrameRecorder(FrameRecorder recorder){
+        mFrameRecorder = recorder;
+    }
+
+    private void recordFrame(ScrollMetrics metrics, FrameRecorder recorder, long frameTimeNanos){
+        final int mode = mFlinging ? ScrollMetrics.MODE_FLING
+                : mAutoScroller.isRunning() ? ScrollMetrics.MODE_AUTO_SCROLL : ScrollMetrics.MODE_DRAG;
+        long interval = mLastFrameNanos == 0L ? 0L : frameTimeNanos - mLastFrameNanos;
+        if( mode == ScrollMetrics.MODE_DRAG && interval > DRAG_PAUSE_NANOS ){
+            interval = 0L;
+        }
+
+        // The policy may space auto scroll frames on purpose
+        long expected = mFramePeriodNanos;
+        if( mode == ScrollMetrics.MODE_AUTO_SCROLL && mAutoScrollIntervalNanos > mFramePeriodNanos ){
+            expected = (mAutoScrollIntervalNanos + mFramePeriodNanos - 1) / mFramePeriodNanos * mFramePeriodNanos;
+        }
+        mColumns.recordFrame(metrics, recorder, frameTimeNanos, mode, interval, expected, mFramePeriodNanos);
+    }
+
+    int getColumnCount(){
+        return mColumns.size();
+    }
+
+    SyncedColumn getColumn(int index){
+        return mColumns.get(index);
+    }
+
+    int indexOfColumn(View view){
+        for( int i=0, count=mColumns.size(); i<count; i++ ){
+            if( mColumns.get(i).view == view ){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    void onAttachedToWindow() {
+        mAttached = true;
+        mHost.getViewTreeObserver().addOnScrollChangedListener(mScrollChangedListener);
+        if( mPowerMonitor != null ){
+            // Updates the suspension through the listener
+            mPowerMonitor.start();
+        } else {
+            updateSuspension();
+        }
+    }
+
+    void onDetachedFromWindow() {
+        mAttached = false;
+        mHost.getViewTreeObserver().removeOnScrollChangedListener(mScrollChangedListener);
+        if( mPowerMonitor != null ){
+            mPowerMonitor.stop();
+        }
+        cancelFling();
+        mFrameTicker.cancel();
+        updateSuspension();
+    }
+
+    /**
+     * Forward of the host's window visibility, view visibility and layout changes.
+     */
+    void onHostStateChanged() {
+        updateSuspension();
+    }
+
+    /**
+     * Pause the auto scroll while nothing of it can be seen or nothing can move, and resume it
+     * once that changes unless {@link #stopAnimation()} was called in the meantime.
+     */
+    private void updateSuspension() {
+        boolean suspend = !mAttached
+                || mHost.getWindowVisibility() != View.VISIBLE
+                || !mHost.isShown()
+                || mAutoScrollIntervalNanos < 0
+                || !mHost.getGlobalVisibleRect(mVisibleRect)
+                || !canAutoScroll();
+        if( suspend == mSuspended ){ return; }
+
+        mSuspended = suspend;
+        if( suspend ){
+            if( mAnimating ){ stopAnimationInternal(); }
+        } else if( mTouchMode == TOUCH_MODE_REST && !mFlinging ){
+            // A running fling restarts the auto scroll itself when it ends
+            startAnimationInternal(mResumeDelay);
+            mResumeDelay = DEFAULT_ANIMATION_DELAY;
+        }
+    }
+
+    /**
+     * @return true if any column can still move in its auto scroll direction
+     */
+    private boolean canAutoScroll() {
+        for( int i=0, count=mColumns.size(); i<count; i++ ){
+            SyncedColumn column = mColumns.get(i);
+            float factor = column.getAnimationFactor();
+            if( factor != 0f && column.canScroll(factor > 0f ? 1 : -1) ){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param policy  Decides the auto scroll rate from the power state, null to update every frame
+     */
+    void setAutoScrollPolicy(AutoScrollPolicy policy) {
+        if( policy == mPolicy ){ return; }
+        mPolicy = policy;
+        if( policy == null ){
+            if( mPowerMonitor != null ){
+                mPowerMonitor.stop();
+                mPowerMonitor = null;
+            }
+            applyPolicy();
+            return;
+        }
+
+        if( mPowerMonitor == null ){
+            mPowerMonitor = new PowerMonitor(mHost.getContext(), mPowerState, mPowerListener);
+        }
+        if( mAttached ){
+            mPowerMonitor.start();
+        }
+        applyPolicy();
+    }
+
+    void setThermalThrottled(boolean throttled) {
+        if( mPowerState.isThermalThrottled() == throttled ){ return; }
+        mPowerState.setThermalThrottled(throttled);
+        applyPolicy();
+    }
+
+    private void applyPolicy() {
+        int rate = mPolicy == null ? AutoScrollPolicy.RATE_DISPLAY : mPolicy.getUpdateRate(mPowerState);
+        if( rate == AutoScrollPolicy.RATE_DISPLAY ){
+            mAutoScrollIntervalNanos = 0L;
+        } else if( rate <= AutoScrollPolicy.RATE_PAUSED ){
+            mAutoScrollIntervalNanos = -1L;
+        } else {
+            mAutoScrollIntervalNanos = 1000000000L / rate;
+        }
+        updateSuspension();
+    }
+
+    private final PowerMonitor.Listener mPowerListener = new PowerMonitor.Listener() {
+        @Override
+        public void onPowerStateChanged(PowerState state) {
+            applyPolicy();
+        }
+    };
+
+    private final ViewTreeObserver.OnScrollChangedListener mScrollChangedListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            // Only an ancestor scrolling the host in or out of view matters here
+            if( mAnimating || mSuspended ){
+                updateSuspension();
+            }
+        }
+    };
+
+    /**
+     * Forward of the host's onInterceptTouchEvent(). The column views get every event until the
+     * pointer moves vertically past the touch slop, so taps, long presses and pressed states reach
+     * them untouched. A touch during a fling catches it, and is not passed on.
+     *
+     * @return true once the gesture belongs to the columns
+     */
+    boolean onInterceptTouchEvent(MotionEvent event) {
+        final int action = MotionEventCompat.getActionMasked(event);
+        if( action == MotionEvent.ACTION_MOVE && mTouchMode == TOUCH_MODE_SCROLL ){
+            return true;
+        }
+
+        if( SyncedTrace.ENABLED ){ SyncedTrace.begin(SyncedTrace.TOUCH); }
+        switch( action ){
+            case MotionEvent.ACTION_DOWN:
+                onTouchDown(event);
+                break;
+            case MotionEvent.ACTION_MOVE:
+                mVelocityTracker.addMovement(event);
+                startDragPastSlop(event);
+                break;
+            case MotionEventCompat.ACTION_POINTER_UP:
+                onSecondaryPointerUp(event);
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                // A column view had the whole gesture
+                endTouch();
+                break;
+        }
+        if( SyncedTrace.ENABLED ){ SyncedTrace.end(); }
+        return mTouchMode == TOUCH_MODE_SCROLL;
+    }
+
+    /**
+     * Forward of the host's onTouchEvent(), which sees the gesture once it is intercepted, or all
+     * of it when no column view took the down.
+     */
+    boolean onTouchEvent(MotionEvent event) {
+        if( SyncedTrace.ENABLED ){ SyncedTrace.begin(SyncedTrace.TOUCH); }
+        final int action = MotionEventCompat.getActionMasked(event);
+        switch( action ){
+            case MotionEvent.ACTION_DOWN:
+                // Already seen by onInterceptTouchEvent()
+                if( mTouchMode == TOUCH_MODE_REST ){
+                    onTouchDown(event);
+                }
+                break;
+            case MotionEvent.ACTION_MOVE:
+                mVelocityTracker.addMovement(event);
+                startDragPastSlop(event);
+                if( mTouchMode == TOUCH_MODE_SCROLL ){
+                    dragTo(event);
+                }
+                break;
+            case MotionEventCompat.ACTION_POINTER_DOWN: {
+                final int index = MotionEventCompat.getActionIndex(event);
+                settleDrag();
+                mActivePointerId = event.getPointerId(index);
+                mLastTouchY = event.getY(index);
+                resetPrediction();
+                break;
+            }
+            case MotionEventCompat.ACTION_POINTER_UP:
+                onSecondaryPointerUp(event);
+                break;
+            case MotionEvent.ACTION_UP:
+                mVelocityTracker.addMovement(event);
+                if( mTouchMode == TOUCH_MODE_SCROLL ){
+                    settleDrag();
+                    flingFromVelocity(event);
+                } else if( mTouchMode == TOUCH_MODE_DOWN ){
+                    dispatchTapToColumn(event);
+                }
+                endTouch();
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                settleDrag();
+                endTouch();
+                break;
+        }
+        if( SyncedTrace.ENABLED ){ SyncedTrace.end(); }
+        return true;
+    }
+
+    /**
+     * Forward of the host's requestDisallowInterceptTouchEvent(), a column view that claims the
+     * gesture before the slop ends it for the columns.
+     */
+    void onDisallowInterceptTouchEvent(boolean disallow) {
+        if( disallow && mTouchMode == TOUCH_MODE_DOWN ){
+            endTouch();
+        }
+    }
+
+    private void onTouchDown(MotionEvent event) {
+        mVelocityTracker.clear();
+        mVelocityTracker.addMovement(event);
+        mActivePointerId = event.getPointerId(0);
+        mDownX = event.getX();
+        mDownY = event.getY();
+        mLastTouchY = mDownY;
+
+        final boolean caught = mFlinging;
+        cancelFling();
+        stopAnimationInternal();
+        if( caught ){
+            startDrag();
+        } else {
+            mTouchMode = TOUCH_MODE_DOWN;
+        }
+    }
+
+    private void startDragPastSlop(MotionEvent event) {
+        if( mTouchMode != TOUCH_MODE_DOWN ){ return; }
+        final int index = event.findPointerIndex(mActivePointerId);
+        if( index < 0 ){ return; }
+        final float dy = event.getY(index) - mDownY;
+        if( Math.abs(dy) > mTouchSlop ){
+            // Start from the edge of the slop, so the content does not jump
+            mLastTouchY = mDownY + (dy > 0 ? mTouchSlop : -mTouchSlop);
+            startDrag();
+        }
+    }
+
+    private void startDrag() {
+        mTouchMode = TOUCH_MODE_SCROLL;
+        resetPrediction();
+        final ViewParent parent = mHost.getParent();
+        if( parent != null ){
+            parent.requestDisallowInterceptTouchEvent(true);
+        }
+    }
+
+    /**
+     * The latest sample spans every batched one since the previous event, so the drag stays exact
+     * however many samples arrive within a frame.
+     */
+    private void dragTo(MotionEvent event) {
+        final int index = event.findPointerIndex(mActivePointerId);
+        if( index < 0 ){ return; }
+        final float y = event.getY(index);
+        final float distance = mLastTouchY - y;
+        mLastTouchY = y;
+        mTouchSampleNanos = event.getEventTime() * 1000000L;
+        if( mLowLatencyDrag ){
+            // Only sampled here, the frame moves the columns to where the finger will be
+            for( int h=0, size=event.getHistorySize(); h<size; h++ ){
+                mTouchPredictor.addSample(event.getHistoricalEventTime(h) * 1000000L,
+                        event.getHistoricalY(index, h));
+            }
+            mTouchPredictor.addSample(mTouchSampleNanos, y);
+            mFrameTicker.schedule();
+        } else if( distance != 0f ){
+            accumulateScroll(distance, false);
+            mFrameTicker.schedule();
+        }
+    }
+
+    /**
+     * Low latency drag: move the columns to the finger position predicted for when this frame is
+     * displayed, a frame period after its vsync.
+     *
+     * @return true while the shown position has not caught up with the latest sample
+     */
+    private boolean dragToPrediction(long frameTimeNanos) {
+        if( mTouchPredictor.isEmpty() ){ return false; }
+        final float target = mTouchPredictor.predict(frameTimeNanos + mFramePeriodNanos);
+        final float distance = mAppliedTouchY - target;
+        mAppliedTouchY = target;
+        if( distance != 0f ){
+            accumulateScroll(distance, false);
+        }
+        return Math.abs(target - mTouchPredictor.getLatest()) >= 0.5f;
+    }
+
+    /**
+     * Take back what the prediction ran ahead or behind of the latest sample, before the pointer
+     * changes or the drag ends.
+     */
+    private void settleDrag() {
+        if( !mLowLatencyDrag || mTouchMode != TOUCH_MODE_SCROLL ){ return; }
+        final float distance = mAppliedTouchY - mLastTouchY;
+        mAppliedTouchY = mLastTouchY;
+        if( distance != 0f ){
+            accumulateScroll(distance, false);
+            mFrameTicker.schedule();
+        }
+    }
+
+    private void resetPrediction() {
+        mTouchPredictor.reset();
+        mAppliedTouchY = mLastTouchY;
+    }
+
+    private void flingFromVelocity(MotionEvent event) {
+        mVelocityTracker.computeCurrentVelocity(1000, mMaxFlingVelocity);
+        final float velocityY = mVelocityTracker.getYVelocity(mActivePointerId);
+        if( Math.abs(velocityY) < mMinFlingVelocity ){ return; }
+
+        if( SyncedTrace.ENABLED ){ SyncedTrace.begin(SyncedTrace.FLING); }
+        // Event times share the frame clock, so the first frame already moves
+        startFling(-velocityY, event.getEventTime() * 1000000L);
+        if( SyncedTrace.ENABLED ){ SyncedTrace.end(); }
+        mFrameTicker.schedule();
+    }
+
+    private void onSecondaryPointerUp(MotionEvent event) {
+        final int index = MotionEventCompat.getActionIndex(event);
+        if( event.getPointerId(index) != mActivePointerId ){ return; }
+        final int newIndex = index == 0 ? 1 : 0;
+        settleDrag();
+        mActivePointerId = event.getPointerId(newIndex);
+        mLastTouchY = event.getY(newIndex);
+        resetPrediction();
+        mVelocityTracker.clear();
+    }
+
+    private void endTouch() {
+        mTouchMode = TOUCH_MODE_REST;
+        mActivePointerId = INVALID_POINTER;
+        if( !mFlinging ){
+            startAnimationInternal(DEFAULT_ANIMATION_DELAY);
+        }
+    }
+
+    /**
+     * A tap no column view took, for columns that handle clicks themselves.
+     */
+	private void dispatchTapToColumn(MotionEvent e){
+        final int x = (int) mDownX + mHost.getScrollX();
+        for( int i=0, count=mColumns.size(); i<count; i++ ){
+            SyncedColumn column = mColumns.get(i);
+            if( column.containsX(x) ){
+                column.dispatchTap(mHost, e);
+                break;
+            }
+        }
+	}
+
+    /**
+     * @param engine  Physics of the flings from now on, null for the platform's spline
+     */
+    void setFlingEngine(FlingEngine engine){
+        mFlingEngine = engine != null ? engine
+                : new SplineFlingEngine(mHost.getResources().getDisplayMetrics().density * 160f);
+    }
+
+    /**
+     * @see ColumnFling#snapTo(com.wenhui.syncedListView.core.ItemHeightIndex, double)
+     */
+    void setFlingSnap(boolean snap){
+        mFlingSnap = snap;
+    }
+
+    /**
+     * Hand each column a velocity for its own fling, where it has one, instead of replaying the
+     * shared fling into it. The columns keep their own fling paths and messages, and the engine
+     * only corrects their drift from the leading column before each draw.
+     */
+    void setNativeFling(boolean enabled){
+        mNativeFling = enabled;
+    }
+
+    /**
+     * Move a drag from the frame callback instead of from each touch event, to where the finger is
+     * predicted to be when the frame is displayed, so the content stays under the finger instead of
+     * trailing it by the input and display pipeline.
+     */
+    void setLowLatencyDrag(boolean enabled){
+        if( enabled == mLowLatencyDrag ){ return; }
+        settleDrag();
+        mLowLatencyDrag = enabled;
+        resetPrediction();
+    }
+
+    /**
+     * Start every column's fling from the shared velocity. The end of each is known up front, so it
+     * is moved to a row boundary and to the end of the content here, and the rows it lands on are
+     * prefetched before the first frame.
+     *
+     * @param velocity  Pixels per second, positive moves the content up
+     */
+    private void startFling(float velocity, long startTimeNanos){
+        final FlingEngine engine = mFlingEngine;
+        mNativeLeader = null;
+        for( int i=0, count=mColumns.size(); i<count; i++ ){
+            SyncedColumn column = mColumns.get(i);
+            ColumnFling fling = column.getFling();
+            fling.start(engine, velocity, column.getFlingFriction(), column.getScrollFactor(), startTimeNanos);
+            if( fling.isFinished() ){ continue; }
+
+            boolean settle = true;
+            if( mNativeFling && flingNatively(column, velocity) ){
+                // The column moves itself, its fling only predicts where it lands
+                fling.cancel();
+                settle = false;
+            }
+            mColumns.landFling(column, settle, mFlingSnap,
+                    mPrefetchHorizonNanos > 0L ? MAX_PREFETCH_PER_PASS : 0);
+        }
+
+        if( mNativeLeader != null ){
+            mNativeLeaderDistance = mNativeLeader.getScrolledDistance();
+            mNativeIdleFrames = 0;
+            mHost.getViewTreeObserver().addOnPreDrawListener(mDriftCorrector);
+        }
+        mFlinging = true;
+    }
+
+    /**
+     * Start the column's own fling with the velocity that covers its share of the shared fling's
+     * distance. The distance does not grow linearly with the velocity, so the velocity is not
+     * simply scaled.
+     *
+     * @return false if the column has no fling of its own
+     */
+    private boolean flingNatively(SyncedColumn column, float velocity){
+        final double distance = mPlatformFling.getDistance(velocity, 1f) * column.getScrollFactor();
+        final float columnVelocity = ColumnFling.getVelocityFor(mPlatformFling, distance, 1f);
+        if( !column.flingNatively(Math.round(columnVelocity)) ){ return false; }
+
+        column.nativeFling = true;
+        column.nativeFlingStart = column.getScrolledDistance();
+        // Only rows skipped during this fling count
+        column.takeEstimatedDistance();
+        column.getFling().setFinalDistance(distance);
+        // The fastest column has the finest steps to follow
+        if( mNativeLeader == null || Math.abs(column.getScrollFactor()) > Math.abs(mNativeLeader.getScrollFactor()) ){
+            mNativeLeader = column;
+        }
+        return true;
+    }
+
+    /**
+     * @return true while the leading column still moves
+     */
+    private boolean stepNativeFling(){
+        final long distance = mNativeLeader.getScrolledDistance();
+        if( distance != mNativeLeaderDistance ){
+            mNativeLeaderDistance = distance;
+            mNativeIdleFrames = 0;
+            return true;
+        }
+        // The column's fling may only start moving on the next frame
+        if( ++mNativeIdleFrames < NATIVE_FLING_IDLE_FRAMES ){ return true; }
+        stopNativeFling();
+        return false;
+    }
+
+    private void stopNativeFling(){
+        for( int i=0, count=mColumns.size(); i<count; i++ ){
+            SyncedColumn column = mColumns.get(i);
+            if( column.nativeFling ){
+                column.stopNativeFling();
+                column.nativeFling = false;
+            }
+        }
+        mNativeLeader = null;
+        mHost.getViewTreeObserver().removeOnPreDrawListener(mDriftCorrector);
+    }
+
+    /**
+     * Runs after every column's fling stepped this frame, and moves the other columns to where
+     * their factors put them relative to the leading column.
+     */
+    private final ViewTreeObserver.OnPreDrawListener mDriftCorrector = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            final SyncedColumn leader = mNativeLeader;
+            if( leader == null ){ return true; }
+            final double travel = (double) (leader.getScrolledDistance() - leader.nativeFlingStart)
+                    / leader.getScrollFactor();
+            final boolean leaderEstimated = leader.takeEstimatedDistance();
+            for( int i=0, count=mColumns.size(); i<count; i++ ){
+                SyncedColumn column = mColumns.get(i);
+                if( !column.nativeFling || column == leader ){ continue; }
+                long expected = Math.round(travel * column.getScrollFactor());
+                int drift = (int) (expected - (column.getScrolledDistance() - column.nativeFlingStart));
+                final boolean estimated = column.takeEstimatedDistance() || leaderEstimated;
+                if( estimated ){
+                    // Rows were skipped unmeasured, part of the drift is estimation error: move no
+                    // more than the touch slop, and take the rest as the new alignment
+                    int bounded = Math.max(-mTouchSlop, Math.min(mTouchSlop, drift));
+                    column.nativeFlingStart -= drift - bounded;
+                    drift = bounded;
+                }
+                if( drift != 0 ){
+                    column.scrollBy(drift);
+                }
+            }
+            return true;
+        }
+    };
+
+    private void cancelFling(){
+        mColumns.cancelFlings();
+        if( mNativeLeader != null ){
+            stopNativeFling();
+        }
+        mFlinging = false;
+    }
+
+    /**
+     * Advance the fling by one frame.
+     *
+     * @return true if the fling needs another frame
+     */
+    private boolean stepFling(long frameTimeNanos){
+        if( !mFlinging ){ return false; }
+
+        if( SyncedTrace.ENABLED ){ SyncedTrace.begin(SyncedTrace.FLING); }
+        if( mAnimating ){ stopAnimationInternal(); }
+        boolean running = mColumns.stepFlings(frameTimeNanos);
+        if( mNativeLeader != null && stepNativeFling() ){
+            running = true;
+        }
+        mFlinging = running;
+        if( !mFlinging ){
+            startAnimationInternal(DEFAULT_ANIMATION_DELAY);
+        }
+        if( SyncedTrace.ENABLED ){ SyncedTrace.end(); }
+        return mFlinging;
+    }
+
+    long getColumnScrollOffset(int index){
+        return mColumns.get(index).getScrollOffset();
+    }
+
+    /**
+     * Jump a column to an absolute content offset, dropping what it had pending.
+     */
+    boolean scrollColumnTo(int index, long offset){
+        SyncedColumn column = mColumns.get(index);
+        column.clearPendingScroll();
+        column.setTranslationOffset(0f);
+        return column.scrollToOffset(offset);
+    }
+
+    boolean isAnimating() {
+        return mAnimating;
+    }
+
+    void startAnimation(long delay) {
+        mRequestStopAnim = false;
+        if( mSuspended ){
+            // Started once the host is shown and its columns can move
+            mResumeDelay = delay;
+        }
+        startAnimationInternal(delay);
+    }
+
+    private void startAnimationInternal(long delay){
+        if( mAnimating ){ return; }
+
+        if(mRequestStopAnim ){ return; }
+
+        if( mSuspended ){ return; }
+
+        mAnimating = true;
+        mHost.postDelayed(mAnimationLaunchRunnable, delay);
+    }
+
+    private Runnable mAnimationLaunchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mAutoScroller.start();
+        }
+    };
+
+    void stopAnimation(){
+        mRequestStopAnim = true;
+        stopAnimationInternal();
+    }
+
+    private void stopAnimationInternal(){
+        mAnimating = false;
+        mHost.removeCallbacks(mAnimationLaunchRunnable);
+        mAutoScroller.cancel();
+    }
+
+    /**
+     *
+     * @param velocity  Distance per second
+     */
+    void setAnimationVelocity(int velocity){
+        mAutoScroller.clock.setVelocity(velocity * 60);
+    }
+
+    /**
+     * @param millis  How far ahead of the auto scroll rows are prefetched, 0 to stop prefetching
+     */
+    void setPrefetchHorizon(long millis){
+        mPrefetchHorizonNanos = millis * 1000000L;
+    }
+
+    /**
+     * Tell the {@link PrefetchAdapter} of every column which rows the auto scroll brings into view
+     * within the horizon. At most every {@link #PREFETCH_INTERVAL_NANOS}, and each row once.
+     */
+    private void prefetch(long frameTimeNanos){
+        if( mPrefetchHorizonNanos <= 0L ){ return; }
+        if( frameTimeNanos - mLastPrefetchNanos < PREFETCH_INTERVAL_NANOS ){ return; }
+        mLastPrefetchNanos = frameTimeNanos;
+
+        final double travel = (double) mAutoScroller.clock.getVelocity() * mPrefetchHorizonNanos
+                / AutoScrollClock.MINUTE_NANOS;
+        mColumns.prefetch(travel, MAX_PREFETCH_PER_PASS);
+    }
+
+    /**
+     * @see #flushScroll(boolean)
+     */
+    void setTranslationAutoScroll(boolean enabled){
+        this.mTranslationAutoScroll = enabled;
+    }
+
+    /**
+     * Add the shared distance to every column's pending scroll, each scaled by its own factor.
+     * Nothing moves until {@link #flushScroll(boolean)} runs on the next frame.
+     */
+    private void accumulateScroll(double distance, boolean animating){
+        mColumns.accumulate(distance, animating);
+    }
+
+    /**
+     * Apply the pending scroll of every column, once per frame.
+     *
+     * @param translate  Show the pending scroll by translation alone while the column allows it,
+     *                   it is only rebased into a real scroll when a row would enter or leave
+     */
+    private void flushScroll(boolean translate){
+        mColumns.flush(translate, mMetrics);
+    }
+
+    private final FrameTicker.Callback mFrameCallback = new FrameTicker.Callback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if( SyncedTrace.ENABLED ){ SyncedTrace.begin(SyncedTrace.FRAME); }
+            final ScrollMetrics metrics = mMetrics;
+            final FrameRecorder recorder = mFrameRecorder;
+            if( metrics != null || recorder != null ){
+                recordFrame(metrics, recorder, frameTimeNanos);
+            }
+
+            boolean flinging = stepFling(frameTimeNanos);
+            boolean predicting = mLowLatencyDrag && mTouchMode == TOUCH_MODE_SCROLL
+                    && dragToPrediction(frameTimeNanos);
+            boolean autoScrolling = mAutoScroller.isRunning();
+            if( autoScrolling ){
+                if( SyncedTrace.ENABLED ){ SyncedTrace.begin(SyncedTrace.AUTO_SCROLL); }
+                mAutoScroller.doFrame(frameTimeNanos);
+                if( SyncedTrace.ENABLED ){ SyncedTrace.end(); }
+            }
+
+            flushScroll(autoScrolling && mTranslationAutoScroll);
+            if( mTouchSampleNanos != 0L ){
+                if( metrics != null ){
+                    metrics.recordTouchLatency(System.nanoTime() - mTouchSampleNanos);
+                }
+                mTouchSampleNanos = 0L;
+            }
+            if( autoScrolling ){
+                if( SyncedTrace.ENABLED ){ SyncedTrace.begin(SyncedTrace.PREFETCH); }
+                prefetch(frameTimeNanos);
+                if( SyncedTrace.ENABLED ){ SyncedTrace.end(); }
+            }
+
+            if( autoScrolling && !canAutoScroll() ){
+                // A finite column reached its end, idle until a layout changes that
+                updateSuspension();
+            }
+
+            if( flinging || predicting ){
+                mFrameTicker.schedule();
+            } else if( mAutoScroller.isRunning() ){
+                scheduleAutoScrollFrame(frameTimeNanos);
+            }
+            // A drag schedules its next frame from the touch events that follow
+            boolean continues = mFrameTicker.isScheduled() || mTouchMode == TOUCH_MODE_SCROLL;
+            mLastFrameNanos = continues ? frameTimeNanos : 0L;
+            if( SyncedTrace.ENABLED ){ SyncedTrace.end(); }
+        }
+    };
+
+    /**
+     * Skip the frames the policy leaves out, a touch scroll schedules the next frame right away.
+     */
+    private void scheduleAutoScrollFrame(long frameTimeNanos){
+        if( mAutoScrollIntervalNanos <= 0L ){
+            mFrameTicker.schedule();
+            return;
+        }
+        // The callback runs on the first frame after the delay, so aim half a frame early
+        long wait = frameTimeNanos + mAutoScrollIntervalNanos - mFramePeriodNanos / 2 - System.nanoTime();
+        if( wait <= 0L ){
+            mFrameTicker.schedule();
+        } else {
+            mFrameTicker.scheduleDelayed(wait / 1000000L);
+        }
+    }
+
+    /**
+     * Endless auto scroll. The travelled distance is derived from the frame time, so every displayed
+     * frame moves the columns exactly once and the speed does not depend on the refresh rate.
+     */
+    private class AutoScroller {
+        final AutoScrollClock clock;
+        private boolean running = false;
+
+        AutoScroller(int velocityPerMinute){
+            clock = new AutoScrollClock(velocityPerMinute);
+        }
+
+        void start(){
+            running = true;
+            clock.reset();
+            mFrameTicker.schedule();
+        }
+
+        void cancel(){
+            running = false;
+        }
+
+        boolean isRunning(){
+            return running;
+        }
+
+        void doFrame(long frameTimeNanos){
+            double diff = clock.advance(frameTimeNanos);
+            if( diff != 0 ){
+                accumulateScroll(diff, true);
+            }
+        }
+    }
+
+}
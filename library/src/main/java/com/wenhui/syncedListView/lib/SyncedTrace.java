@@ -0,0 +1,59 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Systrace sections around the library's stages, so frame time can be attributed to them in
+ * systrace and Perfetto captures. {@link #ENABLED} is a compile time constant, build the library
+ * with -PsyncedTrace to turn it on; otherwise javac drops every guarded call and nothing is left
+ * for R8 to strip.
+ * <p>
+ * Callers guard with {@code if( SyncedTrace.ENABLED )} and pass one of the constant names, so
+ * tracing allocates nothing.
+ */
+final class SyncedTrace {
+
+    static final boolean ENABLED = BuildConfig.SYNCED_TRACE;
+
+    static final String FRAME = "SyncedList:frame";
+    static final String TOUCH = "SyncedList:touch";
+    static final String FLING = "SyncedList:fling";
+    static final String AUTO_SCROLL = "SyncedList:autoScroll";
+    static final String SCROLL_COLUMN = "SyncedList:scrollColumn";
+    static final String PREFETCH = "SyncedList:prefetch";
+
+    private SyncedTrace(){}
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    static void begin(String section){
+        if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2 ){
+            Trace.beginSection(section);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    static void end(){
+        if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2 ){
+            Trace.endSection();
+        }
+    }
+
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Adapter;
+import android.widget.ListAdapter;
+
+import com.wenhui.syncedListView.core.ItemHeightIndex;
+import com.wenhui.syncedListView.core.ScrollMetrics;
+
+import java.util.ArrayList;
+
+/**
+ * A column laid out directly by {@link VirtualSyncedListLayout}. Its rows are children of the layout
+ * itself; scrolling offsets them in place and only binds or recycles the rows crossing the edges.
+ */
+final class VirtualColumn extends SyncedColumn {
+
+    final ListAdapter adapter;
+    private final VirtualSyncedListLayout host;
+    private final RecycleBin recycleBin;
+    private final int adapterSlot;
+    private final ArrayList<View> children = new ArrayList<View>();
+    private int left, top, right, bottom;
+
+    /** Adapter position of the first row, and its top in host coordinates */
+    int firstPosition;
+    private int firstTop;
+
+    /** Selection applied on the next layout, -1 if none */
+    private int pendingPosition = -1;
+    private int pendingOffset;
+    private ItemHeightIndex heightIndex;
+    private ScrollMetrics.Column metrics;
+
+    VirtualColumn(VirtualSyncedListLayout host, ListAdapter adapter, int adapterSlot,
+                  float scrollFactor, float animationFactor) {
+        super(null, scrollFactor, animationFactor);
+        this.host = host;
+        this.adapter = adapter;
+        this.adapterSlot = adapterSlot;
+        this.recycleBin = host.getRecycleBin();
+    }
+
+    void setBounds(int left, int top, int right, int bottom){
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    /**
+     * Takes effect on the next layout, which rebinds the rows.
+     *
+     * @param offset  Distance of the row from the top of the column
+     */
+    void setSelectionFromTop(int position, int offset){
+        pendingPosition = position;
+        pendingOffset = offset;
+    }
+
+    /**
+     * Lay the rows out again from the first position.
+     *
+     * @param rebind  true to recycle every row and bind them again, after a data change
+     */
+    void layoutChildren(boolean rebind){
+        countLayoutPass();
+        if( !children.isEmpty() ){
+            firstTop = children.get(0).getTop();
+        }
+
+        final int count = adapter.getCount();
+        if( rebind || count == 0 || pendingPosition >= 0 ){
+            recycleAll();
+        }
+        if( pendingPosition >= 0 ){
+            firstPosition = pendingPosition;
+            firstTop = top + pendingOffset;
+            pendingPosition = -1;
+        }
+        if( count == 0 ){
+            firstPosition = 0;
+            return;
+        }
+        if( firstPosition >= count ){
+            firstPosition = count - 1;
+        }
+
+        // Restack the attached rows, their size may have changed
+        final int spacing = host.getRowSpacing();
+        int y = firstTop;
+        for( int i=0, size=children.size(); i<size; i++ ){
+            View child = children.get(i);
+            measureChild(child);
+            child.layout(left, y, right, y + child.getMeasuredHeight());
+            y += child.getMeasuredHeight() + spacing;
+        }
+
+        recycleOffscreen();
+        fill();
+        correctEdges();
+        recordRowHeights();
+    }
+
+    @Override
+    void scrollColumnBy(int deltaY) {
+        if( children.isEmpty() ){ return; }
+
+        for( int i=0, size=children.size(); i<size; i++ ){
+            children.get(i).offsetTopAndBottom(-deltaY);
+        }
+
+        recycleOffscreen();
+        fill();
+        correctEdges();
+        recordRowHeights();
+        host.invalidate();
+    }
+
+    @Override
+    public long getScrollOffset() {
+        ItemHeightIndex index = ensureHeightIndex();
+        if( index == null || children.isEmpty() ){ return -1; }
+        return index.offsetOf(firstPosition) + top - children.get(0).getTop();
+    }
+
+    @Override
+    public long getMaxScrollOffset() {
+        ItemHeightIndex index = ensureHeightIndex();
+        if( index == null || index.isWrapping() ){ return UNBOUNDED; }
+        return Math.max(0, index.getTotalHeight() - (bottom - top));
+    }
+
+    @Override
+    boolean scrollToOffset(long offset) {
+        ItemHeightIndex index = ensureHeightIndex();
+        if( index == null ){ return false; }
+        long position = Math.min(index.positionAt(offset), adapter.getCount() - 1);
+        setSelectionFromTop((int) position, (int) (index.offsetOf(position) - offset));
+        return true;
+    }
+
+    @Override
+    public void attachMetrics(ScrollMetrics.Column metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public ItemHeightIndex getHeightIndex() {
+        return ensureHeightIndex();
+    }
+
+    @Override
+    PrefetchAdapter getPrefetchAdapter() {
+        return adapter instanceof PrefetchAdapter ? (PrefetchAdapter) adapter : null;
+    }
+
+    @Override
+    public int getViewportHeight() {
+        return bottom - top;
+    }
+
+    int getLastPosition(){
+        return firstPosition + children.size() - 1;
+    }
+
+    private ItemHeightIndex ensureHeightIndex(){
+        final boolean wrap = adapter instanceof InfiniteListAdapter;
+        final int count = wrap ? ((InfiniteListAdapter) adapter).getItemCount() : adapter.getCount();
+        if( count <= 0 ){ return null; }
+        if( heightIndex == null || heightIndex.getItemCount() != count || heightIndex.isWrapping() != wrap ){
+            int estimate = children.isEmpty() ? bottom - top : children.get(0).getHeight();
+            heightIndex = new ItemHeightIndex(count, wrap, estimate);
+        }
+        return heightIndex;
+    }
+
+    private void recordRowHeights(){
+        if( children.isEmpty() ){ return; }
+        ItemHeightIndex index = ensureHeightIndex();
+        if( index == null ){ return; }
+        final int spacing = host.getRowSpacing();
+        for( int i=0, size=children.size(); i<size; i++ ){
+            index.setHeight(firstPosition + i, children.get(i).getHeight() + spacing);
+        }
+    }
+
+    /**
+     * Rows are translated rather than the whole column, which is the layout itself.
+     */
+    @Override
+    public void setTranslationOffset(float offset) {
+        if( offset == translationOffset ){ return; }
+        translationOffset = offset;
+        for( int i=0, size=children.size(); i<size; i++ ){
+            children.get(i).setTranslationY(-offset);
+        }
+    }
+
+    @Override
+    public boolean canTranslateBy(double offset) {
+        if( Math.abs(offset) <= 0.5 ){ return true; }
+        if( children.isEmpty() ){ return false; }
+        return RowTranslation.canTranslateBy(children.get(0), children.get(children.size() - 1),
+                top, bottom, offset);
+    }
+
+    @Override
+    boolean canScroll(int direction) {
+        if( children.isEmpty() ){ return false; }
+        if( direction > 0 ){
+            return firstPosition + children.size() < adapter.getCount()
+                    || children.get(children.size() - 1).getBottom() > bottom;
+        }
+        return firstPosition > 0 || children.get(0).getTop() < top;
+    }
+
+    @Override
+    boolean containsX(int x) {
+        return x >= left && x < right;
+    }
+
+    @Override
+    void dispatchTap(View host, MotionEvent up) {
+        final int y = (int) up.getY() + host.getScrollY();
+        for( int i=0, size=children.size(); i<size; i++ ){
+            View child = children.get(i);
+            if( y >= child.getTop() && y < child.getBottom() ){
+                this.host.performColumnItemClick(this, child, firstPosition + i);
+                return;
+            }
+        }
+    }
+
+    private void fill(){
+        final int count = adapter.getCount();
+        final int spacing = host.getRowSpacing();
+
+        if( children.isEmpty() ){
+            if( count == 0 ){ return; }
+            addRow(firstPosition, firstTop, true);
+        }
+
+        View last = children.get(children.size() - 1);
+        while( last.getBottom() + spacing < bottom && firstPosition + children.size() < count ){
+            last = addRow(firstPosition + children.size(), last.getBottom() + spacing, true);
+        }
+
+        View first = children.get(0);
+        while( first.getTop() - spacing > top && firstPosition > 0 ){
+            firstPosition--;
+            first = addRow(firstPosition, first.getTop() - spacing, false);
+        }
+    }
+
+    /**
+     * Finite adapters stop at their first and last rows.
+     */
+    private void correctEdges(){
+        if( children.isEmpty() ){ return; }
+
+        View first = children.get(0);
+        if( firstPosition == 0 && first.getTop() > top ){
+            offsetChildren(top - first.getTop());
+            fill();
+            return;
+        }
+
+        View last = children.get(children.size() - 1);
+        if( firstPosition + children.size() == adapter.getCount() && last.getBottom() < bottom ){
+            int delta = bottom - last.getBottom();
+            if( firstPosition == 0 ){
+                delta = Math.min(delta, top - first.getTop());
+            }
+            if( delta > 0 ){
+                offsetChildren(delta);
+                fill();
+            }
+        }
+    }
+
+    private void offsetChildren(int delta){
+        for( int i=0, size=children.size(); i<size; i++ ){
+            children.get(i).offsetTopAndBottom(delta);
+        }
+    }
+
+    /**
+     * @param edge  Top of the new row when adding below, bottom of it when adding above
+     */
+    private View addRow(int position, int edge, boolean below){
+        final int viewType = adapter.getItemViewType(position);
+        final boolean recyclable = viewType != Adapter.IGNORE_ITEM_VIEW_TYPE;
+        final int key = RecycleBin.scrapKey(adapterSlot, viewType);
+        View scrap = recyclable ? recycleBin.getScrapView(key) : null;
+        View child = adapter.getView(position, scrap, host);
+        if( metrics != null ){
+            metrics.recordGetView(scrap != null && child == scrap);
+        }
+        if( scrap != null && child != scrap ){
+            recycleBin.addScrapView(key, scrap);
+        }
+
+        host.addColumnChild(child);
+        child.setTranslationY(-translationOffset);
+        measureChild(child);
+        final int height = child.getMeasuredHeight();
+        final int childTop = below ? edge : edge - height;
+        child.layout(left, childTop, right, childTop + height);
+
+        if( below ){
+            children.add(child);
+        } else {
+            children.add(0, child);
+        }
+        return child;
+    }
+
+    private void measureChild(View child){
+        ViewGroup.LayoutParams lp = child.getLayoutParams();
+        int widthSpec = View.MeasureSpec.makeMeasureSpec(right - left, View.MeasureSpec.EXACTLY);
+        int heightSpec = (lp != null && lp.height >= 0)
+                ? View.MeasureSpec.makeMeasureSpec(lp.height, View.MeasureSpec.EXACTLY)
+                : View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        child.measure(widthSpec, heightSpec);
+    }
+
+    private void recycleOffscreen(){
+        while( children.size() > 1 && children.get(0).getBottom() <= top ){
+            recycleRow(0);
+            firstPosition++;
+        }
+        while( children.size() > 1 && children.get(children.size() - 1).getTop() >= bottom ){
+            recycleRow(children.size() - 1);
+        }
+    }
+
+    private void recycleAll(){
+        while( !children.isEmpty() ){
+            recycleRow(children.size() - 1);
+        }
+    }
+
+    private void recycleRow(int index){
+        View child = children.remove(index);
+        host.removeColumnChild(child);
+        host.dispatchRowRecycled(child);
+        int position = firstPosition + index;
+        int viewType = position < adapter.getCount() ? adapter.getItemViewType(position)
+                : Adapter.IGNORE_ITEM_VIEW_TYPE;
+        if( viewType != Adapter.IGNORE_ITEM_VIEW_TYPE ){
+            recycleBin.addScrapView(RecycleBin.scrapKey(adapterSlot, viewType), child);
+        }
+    }
+
+}
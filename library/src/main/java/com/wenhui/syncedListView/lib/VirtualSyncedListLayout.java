@@ -0,0 +1,443 @@
+/*
+ * Copyright 2013 Wenhui Yao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wenhui.syncedListView.lib;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.database.DataSetObserver;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.ListAdapter;
+
+import com.wenhui.syncedListView.core.ExponentialFlingEngine;
+import com.wenhui.syncedListView.core.FlingEngine;
+import com.wenhui.syncedListView.core.FrameLog;
+import com.wenhui.syncedListView.core.FrameRecorder;
+import com.wenhui.syncedListView.core.ScrollMetrics;
+import com.wenhui.syncedListView.core.SplineFlingEngine;
+import com.wenhui.syncedListView.core.WrappedPositions;
+
+import java.util.ArrayList;
+
+/**
+ * Synced columns without a ListView per column. The layout binds and positions every row itself, with
+ * one recycle bin and one layout pass for all columns, and scrolling only offsets the rows in place.
+ * Meant for low end devices, where a layout pass per column per frame costs too much.
+ * <p>
+ * Columns share the width equally and take their rows from a {@link ListAdapter}, usually an
+ * {@link InfiniteListAdapter}.
+ */
+public class VirtualSyncedListLayout extends ViewGroup {
+
+    public interface OnColumnItemClickListener {
+        /**
+         * @param position  Adapter position of the row
+         */
+        void onColumnItemClick(VirtualSyncedListLayout parent, int column, View view, int position);
+    }
+
+    private SyncedScrollEngine mEngine;
+    private final RecycleBin mRecycleBin = new RecycleBin();
+    private final ArrayList<ListAdapter> mAdapterSlots = new ArrayList<ListAdapter>();
+    private final ArrayList<VirtualColumn> mColumns = new ArrayList<VirtualColumn>();
+    private int mColumnSpacing = 0;
+    private int mRowSpacing = 0;
+    private boolean mDataChanged = false;
+    private OnColumnItemClickListener mOnColumnItemClickListener;
+    private AbsListView.RecyclerListener mRecyclerListener;
+
+    public VirtualSyncedListLayout(Context context) {
+        super(context);
+        init(context, null);
+    }
+
+    public VirtualSyncedListLayout(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        init(context, attrs);
+    }
+
+    public VirtualSyncedListLayout(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init(context, attrs);
+    }
+
+    private void init(Context context, AttributeSet attrs ) {
+
+        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.VirtualSyncedListLayout);
+        try{
+            mColumnSpacing = a.getDimensionPixelSize(R.styleable.VirtualSyncedListLayout_column_spacing, 0);
+            mRowSpacing = a.getDimensionPixelSize(R.styleable.VirtualSyncedListLayout_row_spacing, 0);
+        }finally {
+            a.recycle();
+        }
+
+        mEngine = new SyncedScrollEngine(this);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mEngine.onAttachedToWindow();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mEngine.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        mEngine.onHostStateChanged();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        // Dispatched from the View constructor when visibility is set in xml
+        if( mEngine != null ){
+            mEngine.onHostStateChanged();
+        }
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
+        return mEngine.onInterceptTouchEvent(ev);
+    }
+
+    @Override
+    public void requestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+        super.requestDisallowInterceptTouchEvent(disallowIntercept);
+        mEngine.onDisallowInterceptTouchEvent(disallowIntercept);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        return mEngine.onTouchEvent(event);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec),
+                getDefaultSize(getSuggestedMinimumHeight(), heightMeasureSpec));
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        final int count = mColumns.size();
+        if( count == 0 ){ return; }
+
+        final int top = getPaddingTop();
+        final int bottom = getHeight() - getPaddingBottom();
+        final int contentWidth = getWidth() - getPaddingLeft() - getPaddingRight();
+        final int columnWidth = (contentWidth - mColumnSpacing * (count - 1)) / count;
+
+        int left = getPaddingLeft();
+        for( int i=0; i<count; i++ ){
+            VirtualColumn column = mColumns.get(i);
+            column.setBounds(left, top, left + columnWidth, bottom);
+            column.layoutChildren(mDataChanged);
+            left += columnWidth + mColumnSpacing;
+        }
+        mDataChanged = false;
+        mEngine.onHostStateChanged();
+    }
+
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT);
+    }
+
+    /**
+     * Add a column of rows from the adapter. Columns with the same adapter share scrap views.
+     * An {@link InfiniteListAdapter} starts near the middle of its range so it can scroll both ways.
+     *
+     * @param scrollFactor  Factor applied to touch scrolling and fling
+     * @param animationFactor  Factor applied to auto scrolling
+     */
+    public void addColumn(ListAdapter adapter, float scrollFactor, float animationFactor){
+        if( adapter == null ){
+            throw new IllegalArgumentException("Column adapter cannot be null");
+        }
+        if( adapter.getViewTypeCount() > RecycleBin.MAX_VIEW_TYPES ){
+            throw new IllegalArgumentException("Column adapter has more than " + RecycleBin.MAX_VIEW_TYPES + " view types");
+        }
+
+        int slot = mAdapterSlots.indexOf(adapter);
+        if( slot < 0 ){
+            slot = mAdapterSlots.size();
+            mAdapterSlots.add(adapter);
+            adapter.registerDataSetObserver(mDataSetObserver);
+        }
+
+        VirtualColumn column = new VirtualColumn(this, adapter, slot, scrollFactor, animationFactor);
+        if( adapter instanceof InfiniteListAdapter ){
+            int itemCount = ((InfiniteListAdapter) adapter).getItemCount();
+            column.setSelectionFromTop(WrappedPositions.getMiddlePosition(itemCount), 0);
+        }
+        mColumns.add(column);
+        mEngine.addColumn(column);
+        mDataChanged = true;
+        requestLayout();
+    }
+
+    public int getColumnCount(){
+        return mColumns.size();
+    }
+
+    public ListAdapter getColumnAdapter(int index){
+        return mColumns.get(index).adapter;
+    }
+
+    public void setColumnScrollFactor(int index, float factor){
+        mColumns.get(index).setScrollFactor(factor);
+    }
+
+    public void setColumnAnimationScrollFactor(int index, float factor){
+        mColumns.get(index).setAnimationFactor(factor);
+    }
+
+    /**
+     * @param friction  Multiplier of the fling engine's friction for this column, 1 by default
+     */
+    public void setColumnFlingFriction(int index, float friction){
+        mColumns.get(index).setFlingFriction(friction);
+    }
+
+    /**
+     * @param offset  Distance of the row from the top of the column
+     */
+    public void setColumnSelectionFromTop(int index, int position, int offset){
+        mColumns.get(index).setSelectionFromTop(position, offset);
+        requestLayout();
+    }
+
+    public int getColumnFirstVisiblePosition(int index){
+        return mColumns.get(index).firstPosition;
+    }
+
+    public int getColumnLastVisiblePosition(int index){
+        return mColumns.get(index).getLastPosition();
+    }
+
+    /**
+     * Notified whenever a row of any column leaves the layout for the recycle bin, for instance a
+     * {@link RowTaskScheduler}.
+     */
+    public void setRecyclerListener(AbsListView.RecyclerListener listener){
+        mRecyclerListener = listener;
+    }
+
+    public void setColumnSpacing(int spacing){
+        mColumnSpacing = spacing;
+        requestLayout();
+    }
+
+    public void setRowSpacing(int spacing){
+        mRowSpacing = spacing;
+        requestLayout();
+    }
+
+    public int getRowSpacing(){
+        return mRowSpacing;
+    }
+
+    public void setOnColumnItemClickListener(OnColumnItemClickListener listener){
+        mOnColumnItemClickListener = listener;
+    }
+
+    /**
+     * @return Absolute content offset of the column, from the row heights measured so far with
+     * the rest estimated. Wrapping columns keep counting past their first cycle. -1 if the column
+     * has no rows.
+     */
+    public long getColumnScrollOffset(int index){
+        return mEngine.getColumnScrollOffset(index);
+    }
+
+    /**
+     * Scroll a column to an absolute content offset, see {@link #getColumnScrollOffset(int)}.
+     *
+     * @return false if the column has no rows
+     */
+    public boolean scrollColumnTo(int index, long offset){
+        boolean scrolled = mEngine.scrollColumnTo(index, offset);
+        if( scrolled ){
+            requestLayout();
+        }
+        return scrolled;
+    }
+
+    public boolean isAnimating() {
+        return mEngine.isAnimating();
+    }
+
+    /**
+     * Start the auto scroll. It pauses by itself while the layout is hidden, detached or has
+     * nothing left to scroll, and resumes when that changes.
+     */
+    public void startAnimation(long delay) {
+        mEngine.startAnimation(delay);
+    }
+
+    public void stopAnimation(){
+        mEngine.stopAnimation();
+    }
+
+    /**
+     *
+     * @param velocity  Distance per second
+     */
+    public void setAnimationVelocity(int velocity){
+        mEngine.setAnimationVelocity(velocity);
+    }
+
+    /**
+     * Lower or pause the auto scroll rate from the battery saver, battery and thermal state, the
+     * speed stays the same. Null, the default, updates on every frame.
+     *
+     * @see PowerAwareAutoScrollPolicy
+     */
+    public void setAutoScrollPolicy(AutoScrollPolicy policy){
+        mEngine.setAutoScrollPolicy(policy);
+    }
+
+    /**
+     * Report the device's thermal state to the {@link AutoScrollPolicy}, for instance from the
+     * app's own temperature or frame time monitoring.
+     */
+    public void setThermalThrottled(boolean throttled){
+        mEngine.setThermalThrottled(throttled);
+    }
+
+    /**
+     * How far ahead of the auto scroll a column's {@link PrefetchAdapter} hears about rows, one
+     * second by default.
+     *
+     * @param millis  Auto scroll time ahead, 0 to stop prefetching
+     */
+    public void setPrefetchHorizon(long millis){
+        mEngine.setPrefetchHorizon(millis);
+    }
+
+    /**
+     * Physics of the flings, {@link SplineFlingEngine} like the platform's scrollers by default, or
+     * {@link ExponentialFlingEngine}. Null goes back to the default.
+     */
+    public void setFlingEngine(FlingEngine engine){
+        mEngine.setFlingEngine(engine);
+    }
+
+    /**
+     * End every fling on a row boundary, the nearest to where it would have stopped. Columns that
+     * cannot report absolute offsets do not snap.
+     */
+    public void setFlingSnap(boolean snap){
+        mEngine.setFlingSnap(snap);
+    }
+
+    /**
+     * Move drags on the frame callback, to where the finger is predicted to be when the frame is
+     * displayed. Cuts the lag of the content behind the finger, at the cost of a small overshoot
+     * when the finger stops. {@link ScrollMetrics#getTouchLatency()} measures the lag left.
+     */
+    public void setLowLatencyDrag(boolean enabled){
+        mEngine.setLowLatencyDrag(enabled);
+    }
+
+    /**
+     * Record frame intervals, dropped frames, layout passes, row views created or recycled and
+     * scroll time. Recording does not allocate, so it can stay on in production.
+     */
+    public void setMetricsEnabled(boolean enabled){
+        mEngine.setMetricsEnabled(enabled);
+    }
+
+    /**
+     * @return The live metrics, to read on the main thread or copy into a snapshot with
+     * {@link ScrollMetrics#copyTo(ScrollMetrics)}. Null while metrics are off.
+     */
+    public ScrollMetrics getMetrics(){
+        return mEngine.getMetrics();
+    }
+
+    /**
+     * Write a compact record of every frame, with each column's offset and layout passes, into
+     * the recorder's ring buffer file; decode it with {@link FrameLog}. Null to stop, the caller
+     * closes the recorder.
+     */
+    public void setFrameRecorder(FrameRecorder recorder){
+        mEngine.setFrameRecorder(recorder);
+    }
+
+    /**
+     * Auto scroll by translating each column's rows, which only updates render properties, and lay
+     * a column out again only when one of its rows would enter or leave the viewport.
+     */
+    public void setTranslationAutoScroll(boolean enabled){
+        mEngine.setTranslationAutoScroll(enabled);
+    }
+
+    RecycleBin getRecycleBin(){
+        return mRecycleBin;
+    }
+
+    void addColumnChild(View child){
+        LayoutParams params = child.getLayoutParams();
+        if( params == null ){
+            params = generateDefaultLayoutParams();
+        }
+        addViewInLayout(child, -1, params, true);
+    }
+
+    void removeColumnChild(View child){
+        removeViewInLayout(child);
+    }
+
+    void dispatchRowRecycled(View child){
+        if( mRecyclerListener != null ){
+            mRecyclerListener.onMovedToScrapHeap(child);
+        }
+    }
+
+    void performColumnItemClick(VirtualColumn column, View view, int position){
+        if( mOnColumnItemClickListener == null ){ return; }
+        playSoundEffect(SoundEffectConstants.CLICK);
+        mOnColumnItemClickListener.onColumnItemClick(this, mColumns.indexOf(column), view, position);
+    }
+
+    private final DataSetObserver mDataSetObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            mDataChanged = true;
+            requestLayout();
+        }
+
+        @Override
+        public void onInvalidated() {
+            mDataChanged = true;
+            mRecycleBin.clear();
+            requestLayout();
+        }
+    };
+
+}